@@ -0,0 +1,72 @@
+package devwooki.study.querydsl.benchmark;
+
+import devwooki.study.querydsl.QuerydslApplication;
+import devwooki.study.querydsl.entity.Member;
+import devwooki.study.querydsl.entity.Team;
+import devwooki.study.querydsl.repository.MemberBulkLoader;
+import jakarta.persistence.EntityManager;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+ * 벤치마크용 스프링 컨텍스트
+ * 내장 H2(MariaDB 모드)에 항상 같은 데이터(팀 TEAMS개, 회원 MEMBERS명)를 넣어서 커밋 간에 결과를 비교할 수 있게 한다.
+ * SQL 로그(p6spy)는 측정값을 왜곡하므로 끈다.
+ */
+final class BenchmarkContext {
+
+    static final int TEAMS = 10;
+    static final int MEMBERS = 10_000;
+
+    private BenchmarkContext() {
+    }
+
+    static ConfigurableApplicationContext start(String... properties) {
+        List<String> defaults = new ArrayList<>(List.of(
+                "spring.datasource.url=jdbc:h2:mem:benchmark;MODE=MariaDB;DB_CLOSE_DELAY=-1",
+                "spring.datasource.username=sa",
+                "spring.datasource.password=",
+                "spring.jpa.hibernate.ddl-auto=create",
+                "spring.jpa.open-in-view=false",
+                "decorator.datasource.enabled=false",
+                "logging.level.root=warn"
+        ));
+        defaults.addAll(List.of(properties));
+        return new SpringApplicationBuilder(QuerydslApplication.class)
+                .web(WebApplicationType.NONE)
+                .properties(defaults.toArray(new String[0]))
+                .run();
+    }
+
+    static ConfigurableApplicationContext startWithData(String... properties) {
+        ConfigurableApplicationContext context = start(properties);
+        seed(context);
+        return context;
+    }
+
+    // teamName = "team0" ~ "team9", username = "member0" ~, age = 0 ~ 99
+    private static void seed(ConfigurableApplicationContext context) {
+        EntityManager em = context.getBean(EntityManager.class);
+        TransactionTemplate tx = new TransactionTemplate(context.getBean(PlatformTransactionManager.class));
+
+        List<Team> teams = tx.execute(status -> {
+            List<Team> created = new ArrayList<>();
+            for (int i = 0; i < TEAMS; i++) {
+                Team team = new Team("team" + i);
+                em.persist(team);
+                created.add(team);
+            }
+            return created;
+        });
+
+        context.getBean(MemberBulkLoader.class).load(IntStream.range(0, MEMBERS)
+                .mapToObj(i -> new Member("member" + i, i % 100, teams.get(i % TEAMS))));
+    }
+}
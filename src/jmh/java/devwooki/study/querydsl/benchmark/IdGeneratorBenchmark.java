@@ -0,0 +1,160 @@
+package devwooki.study.querydsl.benchmark;
+
+import jakarta.persistence.Entity;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.SequenceGenerator;
+import jakarta.persistence.Table;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntFunction;
+
+/**
+ * id 생성 전략별 insert 처리량 (ops/s = rows/s) : IDENTITY vs SEQUENCE(allocationSize 1 / 50 / 500)
+ * Member/Team의 매핑은 하나로 고정되어 있으므로 같은 모양(username, age)의 벤치마크 전용 엔티티를 전략마다 하나씩 둔다.
+ * 적재 방식은 MemberBulkLoader와 같다. (batch-size마다 flush/clear, JDBC batch insert)
+ * - identity : insert마다 생성된 id를 받아와야 해서 JDBC batch가 꺼진다
+ * - sequence-N : N건마다 시퀀스를 한 번 호출한다 (sequence-500 = querydsl.id.member-allocation-size 기본값)
+ * ./gradlew jmh -Pjmh.includes=IdGeneratorBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class IdGeneratorBenchmark {
+
+    private static final int ROWS = 1_000;
+    private static final int BATCH_SIZE = 500;
+
+    @Param({"identity", "sequence-1", "sequence-50", "sequence-500"})
+    public String generator;
+
+    private ConfigurableApplicationContext context;
+    private EntityManager em;
+    private TransactionTemplate tx;
+    private IntFunction<Object> rows;
+
+    @Setup
+    public void setUp() {
+        context = BenchmarkContext.start("querydsl.bulk.batch-size=" + BATCH_SIZE);
+        em = context.getBean(EntityManager.class);
+        tx = new TransactionTemplate(context.getBean(PlatformTransactionManager.class));
+        rows = switch (generator) {
+            case "identity" -> i -> new IdentityRow("insert" + i, i % 100);
+            case "sequence-1" -> i -> new Sequence1Row("insert" + i, i % 100);
+            case "sequence-50" -> i -> new Sequence50Row("insert" + i, i % 100);
+            case "sequence-500" -> i -> new Sequence500Row("insert" + i, i % 100);
+            default -> throw new IllegalArgumentException(generator);
+        };
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public void insert() {
+        tx.executeWithoutResult(status -> {
+            for (int i = 0; i < ROWS; i++) {
+                em.persist(rows.apply(i));
+                if ((i + 1) % BATCH_SIZE == 0) {
+                    em.flush();
+                    em.clear();
+                }
+            }
+            em.flush();
+            em.clear();
+        });
+    }
+
+    @Entity
+    @Table(name = "bench_identity_row")
+    public static class IdentityRow {
+        @Id
+        @GeneratedValue(strategy = GenerationType.IDENTITY)
+        private Long id;
+        private String username;
+        private int age;
+
+        protected IdentityRow() {
+        }
+
+        IdentityRow(String username, int age) {
+            this.username = username;
+            this.age = age;
+        }
+    }
+
+    @Entity
+    @Table(name = "bench_sequence1_row")
+    public static class Sequence1Row {
+        @Id
+        @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "bench_seq1_generator")
+        @SequenceGenerator(name = "bench_seq1_generator", sequenceName = "bench_seq1", allocationSize = 1)
+        private Long id;
+        private String username;
+        private int age;
+
+        protected Sequence1Row() {
+        }
+
+        Sequence1Row(String username, int age) {
+            this.username = username;
+            this.age = age;
+        }
+    }
+
+    @Entity
+    @Table(name = "bench_sequence50_row")
+    public static class Sequence50Row {
+        @Id
+        @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "bench_seq50_generator")
+        @SequenceGenerator(name = "bench_seq50_generator", sequenceName = "bench_seq50", allocationSize = 50)
+        private Long id;
+        private String username;
+        private int age;
+
+        protected Sequence50Row() {
+        }
+
+        Sequence50Row(String username, int age) {
+            this.username = username;
+            this.age = age;
+        }
+    }
+
+    @Entity
+    @Table(name = "bench_sequence500_row")
+    public static class Sequence500Row {
+        @Id
+        @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "bench_seq500_generator")
+        @SequenceGenerator(name = "bench_seq500_generator", sequenceName = "bench_seq500", allocationSize = 500)
+        private Long id;
+        private String username;
+        private int age;
+
+        protected Sequence500Row() {
+        }
+
+        Sequence500Row(String username, int age) {
+            this.username = username;
+            this.age = age;
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package devwooki.study.querydsl.benchmark;
+
+import devwooki.study.querydsl.entity.Member;
+import devwooki.study.querydsl.repository.MemberJpaRepository;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+/**
+ * 회원 insert 처리량 (ops/s = rows/s)
+ * - saveOneByOne : 기존 MemberJpaRepository.save (persist + flush + clear 를 건마다)
+ * - saveAll : MemberBulkLoader (JDBC batch + 주기적인 flush/clear)
+ * id 할당 전략(IdAllocation)을 바꾸기 전/후 커밋에서 각각 실행해서 비교한다.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class InsertBenchmark {
+
+    private static final int ROWS = 1_000;
+
+    private ConfigurableApplicationContext context;
+    private MemberJpaRepository memberJpaRepository;
+    private TransactionTemplate tx;
+
+    @Setup
+    public void setUp() {
+        context = BenchmarkContext.start();
+        memberJpaRepository = context.getBean(MemberJpaRepository.class);
+        tx = new TransactionTemplate(context.getBean(PlatformTransactionManager.class));
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public void saveOneByOne() {
+        tx.executeWithoutResult(status -> members().forEach(memberJpaRepository::save));
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public void saveAll() {
+        memberJpaRepository.saveAll(members());
+    }
+
+    private static List<Member> members() {
+        return IntStream.range(0, ROWS)
+                .mapToObj(i -> new Member("insert" + i, i % 100))
+                .toList();
+    }
+}
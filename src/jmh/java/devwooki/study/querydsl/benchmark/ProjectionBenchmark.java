@@ -0,0 +1,97 @@
+package devwooki.study.querydsl.benchmark;
+
+import com.querydsl.core.types.Projections;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import devwooki.study.querydsl.dto.MemberDTO;
+import devwooki.study.querydsl.dto.MemberTeamDTO;
+import devwooki.study.querydsl.dto.QMemberDTO;
+import devwooki.study.querydsl.dto.QMemberTeamDTO;
+import jakarta.persistence.EntityManager;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static devwooki.study.querydsl.entity.QMember.member;
+import static devwooki.study.querydsl.entity.QTeam.team;
+
+/**
+ * DTO 프로젝션 방식 비교 (1,000행 조회 + DTO 생성)
+ * bean(setter), fields(필드 직접 주입)는 기본 생성자가 필요해서 MemberTeamDTO에는 쓸 수 없으므로
+ * 네 가지 방식 모두 MemberDTO(username, age)로 비교하고, 참고용으로 QMemberTeamDTO도 측정한다.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ProjectionBenchmark {
+
+    private static final int ROWS = 1_000;
+
+    private ConfigurableApplicationContext context;
+    private JPAQueryFactory queryFactory;
+
+    @Setup
+    public void setUp() {
+        context = BenchmarkContext.startWithData();
+        queryFactory = new JPAQueryFactory(context.getBean(EntityManager.class));
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public List<MemberDTO> bean() {
+        return queryFactory
+                .select(Projections.bean(MemberDTO.class, member.username, member.age))
+                .from(member)
+                .limit(ROWS)
+                .fetch();
+    }
+
+    @Benchmark
+    public List<MemberDTO> fields() {
+        return queryFactory
+                .select(Projections.fields(MemberDTO.class, member.username, member.age))
+                .from(member)
+                .limit(ROWS)
+                .fetch();
+    }
+
+    @Benchmark
+    public List<MemberDTO> constructor() {
+        return queryFactory
+                .select(Projections.constructor(MemberDTO.class, member.username, member.age))
+                .from(member)
+                .limit(ROWS)
+                .fetch();
+    }
+
+    @Benchmark
+    public List<MemberDTO> queryProjection() {
+        return queryFactory
+                .select(new QMemberDTO(member.username, member.age))
+                .from(member)
+                .limit(ROWS)
+                .fetch();
+    }
+
+    @Benchmark
+    public List<MemberTeamDTO> queryProjectionMemberTeam() {
+        return queryFactory
+                .select(new QMemberTeamDTO(member.id, member.username, member.age, team.id, team.name))
+                .from(member)
+                .leftJoin(member.team, team)
+                .limit(ROWS)
+                .fetch();
+    }
+}
@@ -0,0 +1,129 @@
+package devwooki.study.querydsl.benchmark;
+
+import com.querydsl.jpa.JPQLSerializer;
+import com.querydsl.jpa.impl.JPAProvider;
+import com.querydsl.jpa.impl.JPAQuery;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import devwooki.study.querydsl.dto.MemberSearchCondition;
+import devwooki.study.querydsl.dto.MemberTeamDTO;
+import devwooki.study.querydsl.dto.QMemberTeamDTO;
+import devwooki.study.querydsl.repository.MemberJpaRepository;
+import devwooki.study.querydsl.repository.MemberRepository;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.TypedQuery;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.util.StringUtils;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static devwooki.study.querydsl.entity.QMember.member;
+import static devwooki.study.querydsl.entity.QTeam.team;
+
+/**
+ * 동적 검색 방식 비교
+ * - searchBuiler (BooleanBuilder) vs searchWhere (where 파라미터) vs MemberRepository.search (PreparedQuery) vs 순수 JPQL
+ * - buildAndSerialize : 요청마다 쿼리를 만들고 JPQL로 직렬화하는 비용 (PreparedQuery가 아끼는 CPU)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class SearchBenchmark {
+
+    // team : 팀 조건만, age : 나이 범위만, all : 팀 + 나이 범위
+    @Param({"team", "age", "all"})
+    public String shape;
+
+    private ConfigurableApplicationContext context;
+    private EntityManager em;
+    private MemberJpaRepository memberJpaRepository;
+    private MemberRepository memberRepository;
+    private MemberSearchCondition condition;
+
+    @Setup
+    public void setUp() {
+        context = BenchmarkContext.startWithData();
+        em = context.getBean(EntityManager.class);
+        memberJpaRepository = context.getBean(MemberJpaRepository.class);
+        memberRepository = context.getBean(MemberRepository.class);
+
+        condition = new MemberSearchCondition();
+        if (!shape.equals("age")) {
+            condition.setTeamName("team3");
+        }
+        if (!shape.equals("team")) {
+            condition.setAgeGoe(30);
+            condition.setAgeLoe(35);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public List<MemberTeamDTO> searchBuilder() {
+        return memberJpaRepository.searchBuiler(condition);
+    }
+
+    @Benchmark
+    public List<MemberTeamDTO> searchWhere() {
+        return memberJpaRepository.searchWhere(condition);
+    }
+
+    @Benchmark
+    public List<MemberTeamDTO> repositorySearch() {
+        return memberRepository.search(condition);
+    }
+
+    @Benchmark
+    public List<MemberTeamDTO> rawJpql() {
+        StringBuilder jpql = new StringBuilder("select new devwooki.study.querydsl.dto.MemberTeamDTO(m.id, m.username, m.age, t.id, t.name)" +
+                " from Member m left join m.team t where 1 = 1");
+        if (StringUtils.hasText(condition.getTeamName())) {
+            jpql.append(" and t.name = :teamName");
+        }
+        if (condition.getAgeGoe() != null) {
+            jpql.append(" and m.age >= :ageGoe");
+        }
+        if (condition.getAgeLoe() != null) {
+            jpql.append(" and m.age <= :ageLoe");
+        }
+        TypedQuery<MemberTeamDTO> query = em.createQuery(jpql.toString(), MemberTeamDTO.class);
+        if (StringUtils.hasText(condition.getTeamName())) {
+            query.setParameter("teamName", condition.getTeamName());
+        }
+        if (condition.getAgeGoe() != null) {
+            query.setParameter("ageGoe", condition.getAgeGoe());
+        }
+        if (condition.getAgeLoe() != null) {
+            query.setParameter("ageLoe", condition.getAgeLoe());
+        }
+        return query.getResultList();
+    }
+
+    // DB를 타지 않고 "쿼리 생성 + JPQL 직렬화"만 측정 -> PreparedQuery는 이 비용이 요청당 0
+    @Benchmark
+    public String buildAndSerialize() {
+        JPAQuery<MemberTeamDTO> query = new JPAQueryFactory(em)
+                .select(new QMemberTeamDTO(member.id, member.username, member.age, team.id, team.name))
+                .from(member)
+                .leftJoin(member.team, team)
+                .where(StringUtils.hasText(condition.getTeamName()) ? team.name.eq(condition.getTeamName()) : null,
+                        condition.getAgeGoe() == null ? null : member.age.goe(condition.getAgeGoe()),
+                        condition.getAgeLoe() == null ? null : member.age.loe(condition.getAgeLoe()));
+        JPQLSerializer serializer = new JPQLSerializer(JPAProvider.getTemplates(em), em);
+        serializer.serialize(query.getMetadata(), false, null);
+        return serializer.toString();
+    }
+}
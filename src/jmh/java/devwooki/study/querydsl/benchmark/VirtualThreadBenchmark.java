@@ -0,0 +1,96 @@
+package devwooki.study.querydsl.benchmark;
+
+import devwooki.study.querydsl.dto.MemberSearchCondition;
+import devwooki.study.querydsl.repository.MemberJpaRepository;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 요청 스레드 모델 비교 : 톰캣 기본 스레드 풀(200) vs 요청마다 가상 스레드
+ * 커넥션 풀 크기는 POOL_SIZE로 고정하고, 동시에 BURST개의 검색 요청을 처리하는 처리량을 잰다.
+ * virtual은 Java 21에서만 실행된다. (./gradlew jmh -PjavaVersion=21 -Pjmh.includes=VirtualThreadBenchmark)
+ * 21 미만의 JVM에서는 build.gradle이 threads=platform만 넘기므로 virtual 케이스는 건너뛴다.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class VirtualThreadBenchmark {
+
+    private static final int POOL_SIZE = 10;
+    private static final int BURST = 1_000;
+
+    @Param({"platform", "virtual"})
+    public String threads;
+
+    private ConfigurableApplicationContext context;
+    private MemberJpaRepository memberJpaRepository;
+    private MemberSearchCondition condition;
+    private ExecutorService platform;
+    private SimpleAsyncTaskExecutor virtual;
+
+    @Setup
+    public void setUp() {
+        if (threads.equals("virtual") && Runtime.version().feature() < 21) {
+            throw new IllegalStateException("Virtual threads need Java 21+, run with -p threads=platform on this JVM");
+        }
+        context = BenchmarkContext.startWithData(
+                "spring.datasource.hikari.maximum-pool-size=" + POOL_SIZE,
+                "spring.threads.virtual.enabled=" + threads.equals("virtual"));
+        memberJpaRepository = context.getBean(MemberJpaRepository.class);
+
+        condition = new MemberSearchCondition();
+        condition.setTeamName("team3");
+        condition.setAgeGoe(30);
+        condition.setAgeLoe(35);
+
+        if (threads.equals("virtual")) {
+            virtual = new SimpleAsyncTaskExecutor("bench-");
+            virtual.setVirtualThreads(true);
+        } else {
+            platform = Executors.newFixedThreadPool(200); // server.tomcat.threads.max 기본값
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        if (platform != null) {
+            platform.shutdownNow();
+        }
+        if (virtual != null) {
+            virtual.close();
+        }
+        context.close();
+    }
+
+    // 1 op = BURST개의 요청을 모두 처리하는 시간
+    @Benchmark
+    public int burst() {
+        List<CompletableFuture<Integer>> results = new ArrayList<>(BURST);
+        for (int i = 0; i < BURST; i++) {
+            results.add(threads.equals("virtual")
+                    ? CompletableFuture.supplyAsync(this::search, virtual)
+                    : CompletableFuture.supplyAsync(this::search, platform));
+        }
+        return results.stream().mapToInt(CompletableFuture::join).sum();
+    }
+
+    private int search() {
+        return memberJpaRepository.searchWhere(condition).size();
+    }
+}
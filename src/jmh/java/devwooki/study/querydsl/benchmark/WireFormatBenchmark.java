@@ -0,0 +1,75 @@
+package devwooki.study.querydsl.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import devwooki.study.querydsl.config.MemberTeamColumnsConverter;
+import devwooki.study.querydsl.dto.MemberTeamColumns;
+import devwooki.study.querydsl.dto.MemberTeamDTO;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 응답 포맷 비교 : 기존 JSON(List<MemberTeamDTO>) vs 컬럼 JSON vs 컬럼 CBOR
+ * 시간만 잰다. DB는 사용하지 않는다. (크기 비교는 MemberTeamColumnsConverterTest)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class WireFormatBenchmark {
+
+    @Param({"1000", "100000"})
+    public int rows;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final MemberTeamColumnsConverter converter = new MemberTeamColumnsConverter();
+    private List<MemberTeamDTO> dtos;
+    private MemberTeamColumns columns;
+
+    @Setup
+    public void setUp() {
+        dtos = new ArrayList<>(rows);
+        columns = new MemberTeamColumns(rows);
+        for (int i = 0; i < rows; i++) {
+            MemberTeamDTO dto = new MemberTeamDTO((long) i, "member" + i, i % 100,
+                    (long) (i % BenchmarkContext.TEAMS), "team" + (i % BenchmarkContext.TEAMS));
+            dtos.add(dto);
+            columns.add(dto);
+        }
+    }
+
+    @Benchmark
+    public ByteArrayOutputStream jsonRows() throws IOException {
+        ByteArrayOutputStream buffer = buffer();
+        objectMapper.writeValue(buffer, dtos);
+        return buffer;
+    }
+
+    @Benchmark
+    public ByteArrayOutputStream columnsJson() throws IOException {
+        ByteArrayOutputStream buffer = buffer();
+        converter.write(columns, buffer, false);
+        return buffer;
+    }
+
+    @Benchmark
+    public ByteArrayOutputStream columnsCbor() throws IOException {
+        ByteArrayOutputStream buffer = buffer();
+        converter.write(columns, buffer, true);
+        return buffer;
+    }
+
+    private static ByteArrayOutputStream buffer() {
+        return new ByteArrayOutputStream(1 << 16);
+    }
+}
@@ -0,0 +1,54 @@
+package devwooki.study.querydsl.config;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import devwooki.study.querydsl.entity.EntityChangedEvent;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * 페이징 count 결과 캐시
+ * 같은 검색조건으로 들어오는 요청이 대부분이라 매번 같은 count 쿼리를 날리는 비용을 줄인다.
+ * 크기와 TTL로 제한하고, 엔티티가 변경되면 (커밋이든 롤백이든 트랜잭션이 끝나면) 전부 비운다.
+ * 키에는 조회를 시작할 때의 세대(generation)가 들어간다. 비울 때 세대를 올리므로,
+ * 변경 전에 시작해서 비운 뒤에 끝난 count는 이전 세대 키에 저장되어 다시 조회되지 않는다. (invalidateAll은 진행 중인 조회를 막지 못한다)
+ */
+@Component
+public class CountCache {
+
+    private final Cache<GenerationKey, Long> cache;
+    private final AtomicLong generation = new AtomicLong();
+
+    public CountCache(@Value("${querydsl.count-cache.maximum-size:1000}") long maximumSize,
+                      @Value("${querydsl.count-cache.ttl:30s}") Duration ttl) {
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(ttl)
+                .build();
+    }
+
+    /**
+     * key는 equals/hashCode가 구현된 값이어야 한다. (ex. 정규화된 MemberSearchCondition)
+     */
+    public LongSupplier cached(Object key, LongSupplier count) {
+        return () -> cache.get(new GenerationKey(generation.get(), key), k -> count.getAsLong());
+    }
+
+    public void invalidateAll() {
+        generation.incrementAndGet();
+        cache.invalidateAll();
+    }
+
+    @EventListener //트랜잭션이 끝난 뒤 발행된다 (EntityChangeCollector)
+    public void onEntityChanged(EntityChangedEvent event) {
+        invalidateAll();
+    }
+
+    private record GenerationKey(long generation, Object key) {
+    }
+}
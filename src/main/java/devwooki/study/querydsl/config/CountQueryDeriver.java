@@ -0,0 +1,270 @@
+package devwooki.study.querydsl.config;
+
+import com.querydsl.core.JoinExpression;
+import com.querydsl.core.JoinFlag;
+import com.querydsl.core.JoinType;
+import com.querydsl.core.QueryMetadata;
+import com.querydsl.core.types.CollectionExpression;
+import com.querydsl.core.types.Constant;
+import com.querydsl.core.types.Expression;
+import com.querydsl.core.types.ExpressionUtils;
+import com.querydsl.core.types.FactoryExpression;
+import com.querydsl.core.types.Operation;
+import com.querydsl.core.types.Ops;
+import com.querydsl.core.types.ParamExpression;
+import com.querydsl.core.types.Path;
+import com.querydsl.core.types.SubQueryExpression;
+import com.querydsl.core.types.TemplateExpression;
+import com.querydsl.core.types.Visitor;
+import com.querydsl.core.types.dsl.Wildcard;
+import com.querydsl.jpa.JPAQueryMixin;
+import com.querydsl.jpa.JPQLSerializer;
+import com.querydsl.jpa.impl.JPAProvider;
+import com.querydsl.jpa.impl.JPAQuery;
+import com.querydsl.jpa.impl.JPAUtil;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.TypedQuery;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.LongSupplier;
+
+/**
+ * Content 쿼리로부터 가장 가벼운 Count 쿼리를 만들어낸다.
+ * 1. 프로젝션(DTO 생성자 등), order by, offset/limit, fetch 플래그 제거
+ * 2. 어떤 조건(where / having / group by)에서도 참조하지 않는 left join은 행 수에 영향이 없으므로 제거
+ *    - to-one 연관관계 left join
+ *    - left fetch join (to-many 포함) : 연관 엔티티를 채울 뿐이고, 컬렉션 fetch join의 중복 행은 하이버네이트가 root 엔티티로 합친다
+ * 3. 남은 join 중 컬렉션 fetch join이 있으면 (조건에서 참조하거나 inner join이라 뺄 수 없는 경우)
+ *    content 결과는 root 엔티티마다 한 건이므로 count(distinct root)로 센다.
+ * 4. group by / 여러 컬럼 distinct 쿼리는 그룹 키(distinct 행)만 조회하는 쿼리를 from절 서브쿼리로 감싸서
+ *    select count(*) from (...) 로 센다. (하이버네이트 6 HQL의 from절 서브쿼리, 행을 메모리로 가져오지 않는다)
+ */
+final class CountQueryDeriver {
+
+    private CountQueryDeriver() {
+    }
+
+    static LongSupplier derive(EntityManager entityManager, JPAQuery<?> contentQuery) {
+        QueryMetadata source = contentQuery.getMetadata();
+        JPAQuery<?> countQuery = new JPAQuery<Void>(entityManager);
+        QueryMetadata target = countQuery.getMetadata();
+
+        List<JoinExpression> joins = requiredJoins(source);
+        for (JoinExpression join : joins) {
+            target.addJoin(join.getType(), join.getTarget());
+            if (join.getCondition() != null) {
+                target.addJoinCondition(join.getCondition());
+            }
+            for (JoinFlag flag : join.getFlags()) {
+                if (!flag.equals(JPAQueryMixin.FETCH) && !flag.equals(JPAQueryMixin.FETCH_ALL_PROPERTIES)) {
+                    target.addJoinFlag(flag);
+                }
+            }
+        }
+        if (source.getWhere() != null) {
+            target.addWhere(source.getWhere());
+        }
+        for (Map.Entry<ParamExpression<?>, Object> param : source.getParams().entrySet()) {
+            target.setParam((ParamExpression) param.getKey(), param.getValue());
+        }
+
+        if (!source.getGroupBy().isEmpty()) {
+            source.getGroupBy().forEach(target::addGroupBy);
+            if (source.getHaving() != null) {
+                target.addHaving(source.getHaving());
+            }
+            // 그룹 키만 조회하는 쿼리의 행 수를 DB에서 센다
+            return countRows(entityManager, countQuery.select(keysOf(source.getGroupBy())));
+        }
+
+        if (source.isDistinct()) {
+            Expression<?> projection = source.getProjection();
+            if (projection instanceof FactoryExpression) {
+                List<Expression<?>> args = ((FactoryExpression<?>) projection).getArgs();
+                if (args.size() > 1) {
+                    return countRows(entityManager, countQuery.select(keysOf(args)).distinct());
+                }
+                projection = args.get(0);
+            }
+            JPAQuery<Long> count = countQuery.select(
+                    ExpressionUtils.operation(Long.class, Ops.AggOps.COUNT_DISTINCT_AGG, projection));
+            return () -> nullToZero(count.fetchOne());
+        }
+
+        // 컬렉션 fetch join이 남아 있으면 행은 (root x 컬렉션 원소)지만 content는 root 엔티티 단위다
+        Expression<Long> counted = joins.stream().anyMatch(join -> isFetch(join) && isToMany(join))
+                ? ExpressionUtils.operation(Long.class, Ops.AggOps.COUNT_DISTINCT_AGG, aliasOf(joins.get(0)))
+                : Wildcard.count;
+        JPAQuery<Long> count = countQuery.select(counted);
+        return () -> nullToZero(count.fetchOne());
+    }
+
+    /**
+     * 뒤쪽 join부터 거꾸로 확인하면서, 제거해도 되는 left join 중 아무도 참조하지 않는 것을 뺀다.
+     * join은 앞쪽 alias만 참조할 수 있으므로 한 번의 역방향 순회로 충분하다.
+     */
+    private static List<JoinExpression> requiredJoins(QueryMetadata metadata) {
+        Set<Expression<?>> referenced = new HashSet<>();
+        collect(metadata.getWhere(), referenced);
+        collect(metadata.getHaving(), referenced);
+        metadata.getGroupBy().forEach(e -> collect(e, referenced));
+        if (metadata.isDistinct() || !metadata.getGroupBy().isEmpty()) {
+            // distinct/group by 는 프로젝션이 행 수를 결정하므로 프로젝션이 참조하는 join도 남겨야 한다.
+            collect(metadata.getProjection(), referenced);
+        }
+
+        List<JoinExpression> joins = metadata.getJoins();
+        List<JoinExpression> required = new ArrayList<>();
+        for (int i = joins.size() - 1; i >= 0; i--) {
+            JoinExpression join = joins.get(i);
+            if (isDroppable(join) && !(isAlias(join) && referenced.contains(aliasOf(join)))) {
+                continue;
+            }
+            required.add(join);
+            collect(join.getTarget(), referenced);
+            collect(join.getCondition(), referenced);
+        }
+        Collections.reverse(required);
+        return required;
+    }
+
+    // 제거 대상은 left join만 (inner join은 행을 걸러낸다)
+    // - fetch join : to-one이든 to-many든 root 엔티티의 수를 바꾸지 않는다
+    // - 그 밖에는 to-one 연관관계(member.team as team)만. to-many나 세타 조인은 행 수를 바꿀 수 있다.
+    private static boolean isDroppable(JoinExpression join) {
+        if (join.getType() != JoinType.LEFTJOIN) {
+            return false;
+        }
+        if (isFetch(join)) {
+            return true;
+        }
+        return isAlias(join) && !isToMany(join);
+    }
+
+    private static boolean isFetch(JoinExpression join) {
+        return join.hasFlag(JPAQueryMixin.FETCH);
+    }
+
+    // team.members as member, 또는 alias 없는 team.members
+    private static boolean isToMany(JoinExpression join) {
+        Expression<?> target = join.getTarget();
+        if (isAlias(join)) {
+            target = ((Operation<?>) target).getArg(0);
+        }
+        return target instanceof CollectionExpression;
+    }
+
+    private static boolean isAlias(JoinExpression join) {
+        return join.getTarget() instanceof Operation && ((Operation<?>) join.getTarget()).getOperator() == Ops.ALIAS;
+    }
+
+    private static Expression<?> aliasOf(JoinExpression join) {
+        Expression<?> target = join.getTarget();
+        if (isAlias(join)) {
+            return ((Path<?>) ((Operation<?>) target).getArg(1)).getRoot();
+        }
+        return target instanceof Path ? ((Path<?>) target).getRoot() : target;
+    }
+
+    /**
+     * rows 쿼리를 JPQL로 직렬화해서 select count(*) from (rows) 로 감싼다.
+     * 직렬화는 한 번만 하고, 실행할 때는 상수/Param만 바인딩한다. (PreparedQuery와 같은 방식)
+     * 하이버네이트가 서브쿼리를 해석하지 못하면 createQuery에서 예외가 난다. (메모리에서 세는 것으로 대신하지 않는다)
+     */
+    private static LongSupplier countRows(EntityManager entityManager, JPAQuery<?> rows) {
+        JPQLSerializer serializer = new JPQLSerializer(JPAProvider.getTemplates(entityManager), entityManager);
+        serializer.serialize(rows.getMetadata(), false, null);
+        String hql = "select count(*) from (" + serializer + ") counted";
+        List<Object> constants = List.copyOf(serializer.getConstants());
+        Map<ParamExpression<?>, Object> params = rows.getMetadata().getParams();
+        return () -> {
+            TypedQuery<Long> query = entityManager.createQuery(hql, Long.class);
+            JPAUtil.setConstants(query, constants, params);
+            return nullToZero(query.getSingleResult());
+        };
+    }
+
+    // from절 서브쿼리의 select 항목은 alias가 있어야 한다 (k0, k1, ...)
+    private static Expression<?>[] keysOf(List<Expression<?>> expressions) {
+        Expression<?>[] keys = new Expression<?>[expressions.size()];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = ExpressionUtils.as(expressions.get(i), "k" + i);
+        }
+        return keys;
+    }
+
+    private static long nullToZero(Long count) {
+        return count == null ? 0L : count;
+    }
+
+    private static void collect(Expression<?> expression, Set<Expression<?>> roots) {
+        if (expression != null) {
+            expression.accept(RootCollector.INSTANCE, roots);
+        }
+    }
+
+    /**
+     * 표현식이 참조하는 모든 Path의 root(alias)를 모은다.
+     */
+    private enum RootCollector implements Visitor<Void, Set<Expression<?>>> {
+        INSTANCE;
+
+        @Override
+        public Void visit(Constant<?> expr, Set<Expression<?>> roots) {
+            return null;
+        }
+
+        @Override
+        public Void visit(FactoryExpression<?> expr, Set<Expression<?>> roots) {
+            expr.getArgs().forEach(arg -> collect(arg, roots));
+            return null;
+        }
+
+        @Override
+        public Void visit(Operation<?> expr, Set<Expression<?>> roots) {
+            expr.getArgs().forEach(arg -> collect(arg, roots));
+            return null;
+        }
+
+        @Override
+        public Void visit(ParamExpression<?> expr, Set<Expression<?>> roots) {
+            return null;
+        }
+
+        @Override
+        public Void visit(Path<?> expr, Set<Expression<?>> roots) {
+            roots.add(expr.getRoot());
+            return null;
+        }
+
+        @Override
+        public Void visit(SubQueryExpression<?> expr, Set<Expression<?>> roots) {
+            // 상관 서브쿼리는 바깥 alias를 참조할 수 있다
+            QueryMetadata metadata = expr.getMetadata();
+            metadata.getJoins().forEach(join -> {
+                collect(join.getTarget(), roots);
+                collect(join.getCondition(), roots);
+            });
+            collect(metadata.getWhere(), roots);
+            collect(metadata.getHaving(), roots);
+            collect(metadata.getProjection(), roots);
+            metadata.getGroupBy().forEach(e -> collect(e, roots));
+            return null;
+        }
+
+        @Override
+        public Void visit(TemplateExpression<?> expr, Set<Expression<?>> roots) {
+            for (Object arg : expr.getArgs()) {
+                if (arg instanceof Expression) {
+                    collect((Expression<?>) arg, roots);
+                }
+            }
+            return null;
+        }
+    }
+}
@@ -0,0 +1,171 @@
+package devwooki.study.querydsl.config;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.LongSupplier;
+
+/**
+ * 페이징 count 쿼리를 content 쿼리와 동시에 실행하기 위한 실행기
+ * 1. count는 별도 스레드에서 새로운 읽기 전용 트랜잭션(REQUIRES_NEW)으로 실행된다. -> 커넥션도 하나 더 사용한다.
+ * 2. 스레드 수와 대기열은 제한한다. 대기열까지 가득 차면 작업을 넘기지 않고 await에서 호출한 스레드의 트랜잭션으로 센다. (순차 실행과 같아진다)
+ *    (CallerRunsPolicy로 넘기면 커넥션을 잡은 호출 스레드가 REQUIRES_NEW로 커넥션을 하나 더 기다리게 된다)
+ *    spring.threads.virtual.enabled=true (Java 21) 이면 스레드 풀 대신 가상 스레드를 쓰고, 동시 실행 수만 pool-size로 제한한다.
+ *    제한은 가상 스레드 안에서 기다린다. (submit이 호출한 스레드를 막지 않고, 기다리는 시간도 start-timeout에 포함된다)
+ * 3. 호출한 레포지토리 메서드 정보(RepositoryInvocation)는 count 스레드로 넘긴다. (느린 count 쿼리도 출처가 남는다)
+ * 4. 커넥션 풀 고갈 대비 : 호출한 스레드는 보통 이미 커넥션을 잡고 count를 기다린다. (hold-and-wait)
+ *    동시 요청이 풀을 다 차지하면 count는 커넥션을 영원히 얻지 못하므로,
+ *    count가 start-timeout 안에 트랜잭션(커넥션)을 시작하지 못하면 취소하고 호출한 스레드에서 직접 센다.
+ *    취소해도 커넥션을 기다리던 작업이 계속 진행될 수 있으므로, 작업과 호출한 스레드 중 먼저 차지(claim)한 쪽만 센다.
+ * 5. count 트랜잭션에는 timeout을 건다. 스프링이 쿼리 타임아웃으로 적용하므로 필요 없어져 취소된 count의 SQL도 그 안에 끝난다.
+ *    (Future.cancel은 스레드를 인터럽트할 뿐 실행 중인 SQL을 멈추지 않는다)
+ * 주의 : 별도 트랜잭션이므로 호출한 쪽에서 아직 커밋하지 않은 변경은 count에 보이지 않는다.
+ */
+@Slf4j
+@Component
+public class CountQueryExecutor {
+
+    private final AsyncTaskExecutor executor;
+    private final Semaphore permits; //가상 스레드일 때만, 풀은 스레드 수로 제한된다
+    private final TransactionTemplate transactionTemplate;
+    private final Duration startTimeout;
+
+    public CountQueryExecutor(PlatformTransactionManager transactionManager,
+                              @Value("${querydsl.count-executor.pool-size:4}") int poolSize,
+                              @Value("${querydsl.count-executor.queue-capacity:100}") int queueCapacity,
+                              @Value("${querydsl.count-executor.start-timeout:200ms}") Duration startTimeout,
+                              @Value("${querydsl.count-executor.query-timeout:10s}") Duration queryTimeout,
+                              @Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads) {
+        this.executor = virtualThreads ? virtualThreadExecutor() : threadPoolExecutor(poolSize, queueCapacity);
+        this.permits = virtualThreads ? new Semaphore(poolSize) : null;
+        this.startTimeout = startTimeout;
+
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        transactionTemplate.setReadOnly(true);
+        transactionTemplate.setTimeout(Math.toIntExact(Math.max(1, queryTimeout.toSeconds())));
+    }
+
+    private static AsyncTaskExecutor threadPoolExecutor(int poolSize, int queueCapacity) {
+        ThreadPoolTaskExecutor pool = new ThreadPoolTaskExecutor();
+        pool.setThreadNamePrefix("count-query-");
+        pool.setCorePoolSize(poolSize);
+        pool.setMaxPoolSize(poolSize);
+        pool.setQueueCapacity(queueCapacity); //가득 차면 TaskRejectedException (AbortPolicy)
+        pool.initialize();
+        return pool;
+    }
+
+    //가상 스레드는 만드는 비용이 거의 없으므로 풀을 두지 않는다
+    //setConcurrencyLimit은 submit을 호출한 스레드를 막으므로 쓰지 않고, 동시 실행 수는 작업 안에서 permits로 제한한다
+    private static AsyncTaskExecutor virtualThreadExecutor() {
+        SimpleAsyncTaskExecutor virtual = new SimpleAsyncTaskExecutor("count-query-");
+        virtual.setVirtualThreads(true);
+        return virtual;
+    }
+
+    public PendingCount submit(LongSupplier count) {
+        AtomicBoolean claimed = new AtomicBoolean();
+        CountDownLatch started = new CountDownLatch(1);
+        Callable<Long> task = () -> {
+            if (permits != null) {
+                permits.acquire();
+            }
+            try {
+                return transactionTemplate.execute(status -> {
+                    //트랜잭션이 시작됐다 = 커넥션을 얻었다. 그 사이 호출한 스레드가 먼저 셌으면 세지 않는다
+                    if (!claimed.compareAndSet(false, true)) {
+                        return null;
+                    }
+                    started.countDown();
+                    return count.getAsLong();
+                });
+            } finally {
+                if (permits != null) {
+                    permits.release();
+                }
+            }
+        };
+        try {
+            return new PendingCount(executor.submit(RepositoryInvocation.propagate(task)), claimed, started, count);
+        } catch (TaskRejectedException e) {
+            log.debug("Count query executor is saturated, counting on the caller thread");
+            return new PendingCount(null, claimed, started, count);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (executor instanceof ThreadPoolTaskExecutor pool) {
+            pool.shutdown();
+        } else if (executor instanceof SimpleAsyncTaskExecutor virtual) {
+            virtual.close();
+        }
+    }
+
+    /**
+     * 실행 중인(또는 대기 중인) count
+     */
+    public final class PendingCount {
+        private final Future<Long> future; //실행기가 거절했으면 null
+        private final AtomicBoolean claimed;
+        private final CountDownLatch started;
+        private final LongSupplier count;
+
+        private PendingCount(Future<Long> future, AtomicBoolean claimed, CountDownLatch started, LongSupplier count) {
+            this.future = future;
+            this.claimed = claimed;
+            this.started = started;
+            this.count = count;
+        }
+
+        public long await() {
+            if (future == null) {
+                return count.getAsLong();
+            }
+            try {
+                if (!started.await(startTimeout.toMillis(), TimeUnit.MILLISECONDS) && claimed.compareAndSet(false, true)) {
+                    //커넥션을 얻지 못해 시작도 못했다 -> 이미 커넥션이 있는 호출 스레드에서 센다
+                    future.cancel(true);
+                    log.debug("Count query did not start within {}, counting on the caller thread", startTimeout);
+                    return count.getAsLong();
+                }
+                return future.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Count query was interrupted", e);
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) e.getCause();
+                }
+                throw new IllegalStateException("Count query failed", e.getCause());
+            }
+        }
+
+        //이미 끝났으면 아무 일도 하지 않는다. 아직 시작하지 않았으면 나중에 커넥션을 얻어도 세지 않는다.
+        //실행 중인 SQL은 쿼리 타임아웃 안에 끝난다.
+        public void cancel() {
+            claimed.compareAndSet(false, true);
+            if (future != null) {
+                future.cancel(true);
+            }
+        }
+    }
+}
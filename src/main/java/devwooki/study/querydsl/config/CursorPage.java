@@ -0,0 +1,24 @@
+package devwooki.study.querydsl.config;
+
+import lombok.Getter;
+
+import java.util.List;
+
+/**
+ * Keyset 페이징 결과
+ * offset 페이징과 달리 전체 개수(count)는 제공하지 않고, 다음 페이지를 위한 커서만 돌려준다.
+ */
+@Getter
+public class CursorPage<T> {
+    private final List<T> content;
+    private final int size;
+    private final boolean hasNext;
+    private final String nextCursor; // 마지막 페이지면 null
+
+    public CursorPage(List<T> content, int size, String nextCursor) {
+        this.content = content;
+        this.size = size;
+        this.hasNext = nextCursor != null;
+        this.nextCursor = nextCursor;
+    }
+}
@@ -0,0 +1,45 @@
+package devwooki.study.querydsl.config;
+
+import devwooki.study.querydsl.entity.IdAllocation;
+import org.hibernate.cfg.AvailableSettings;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.Map;
+
+/**
+ * 대량 insert/update를 위한 JDBC batch 설정
+ * insert를 엔티티 종류별로 정렬(order_inserts)해야 같은 SQL끼리 묶여서 batch가 끊기지 않는다.
+ * (IDENTITY 전략은 insert 즉시 id를 받아와야 해서 batch가 꺼지므로 Sequence 계열을 사용해야 한다)
+ * 시퀀스는 pooled-lo 옵티마이저로 블록 크기만큼 id를 한 번에 받아온다. 블록 크기도 여기서 하이버네이트 설정으로 넘긴다. (IdAllocation 참고)
+ */
+@Configuration
+public class HibernateBatchConfig implements HibernatePropertiesCustomizer {
+
+    private final int batchSize;
+    private final String idOptimizer;
+    private final int memberAllocationSize;
+    private final int teamAllocationSize;
+
+    public HibernateBatchConfig(@Value("${querydsl.bulk.batch-size:500}") int batchSize,
+                                @Value("${querydsl.id.optimizer:pooled-lo}") String idOptimizer,
+                                @Value("${querydsl.id.member-allocation-size:500}") int memberAllocationSize,
+                                @Value("${querydsl.id.team-allocation-size:50}") int teamAllocationSize) {
+        this.batchSize = batchSize;
+        this.idOptimizer = idOptimizer;
+        this.memberAllocationSize = memberAllocationSize;
+        this.teamAllocationSize = teamAllocationSize;
+    }
+
+    @Override
+    public void customize(Map<String, Object> hibernateProperties) {
+        hibernateProperties.putIfAbsent(AvailableSettings.STATEMENT_BATCH_SIZE, batchSize);
+        hibernateProperties.putIfAbsent(AvailableSettings.ORDER_INSERTS, true);
+        hibernateProperties.putIfAbsent(AvailableSettings.ORDER_UPDATES, true);
+        hibernateProperties.putIfAbsent(AvailableSettings.BATCH_VERSIONED_DATA, true);
+        hibernateProperties.putIfAbsent(AvailableSettings.PREFERRED_POOLED_OPTIMIZER, idOptimizer);
+        hibernateProperties.putIfAbsent(IdAllocation.MEMBER_ALLOCATION_SIZE, memberAllocationSize);
+        hibernateProperties.putIfAbsent(IdAllocation.TEAM_ALLOCATION_SIZE, teamAllocationSize);
+    }
+}
@@ -2,6 +2,7 @@ package devwooki.study.querydsl.config;
 
 import devwooki.study.querydsl.entity.Member;
 import devwooki.study.querydsl.entity.Team;
+import devwooki.study.querydsl.repository.MemberBulkLoader;
 import jakarta.annotation.PostConstruct;
 import jakarta.persistence.EntityManager;
 import jakarta.persistence.PersistenceContext;
@@ -12,6 +13,8 @@ import org.springframework.context.annotation.Profile;
 import org.springframework.stereotype.Component;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.stream.IntStream;
+
 @Profile("local")
 @Component // bean에 자동등록이 되도록
 @RequiredArgsConstructor
@@ -25,10 +28,12 @@ public class InitMember {
     }
 
     @Component
+    @RequiredArgsConstructor
     static class InitMemberService{
         @PersistenceContext
         private EntityManager em;
-        
+        private final MemberBulkLoader memberBulkLoader;
+
         @Transactional
         public void init(){
             //질문, 이왕하는거 PostConstructor에 넣음 안되냐?
@@ -40,10 +45,9 @@ public class InitMember {
             em.persist(teamB);
 
 
-            for(int i = 0 ; i < 100 ; ++i){
-                Team selectedTeam = i%2 == 0 ? teamA : teamB;
-                em.persist(new Member("member" + i, i));
-            }
+            //건마다 persist 대신 batch insert + 주기적인 flush/clear
+            memberBulkLoader.load(IntStream.range(0, 100)
+                    .mapToObj(i -> new Member("member" + i, i)));
         }
     }
 }
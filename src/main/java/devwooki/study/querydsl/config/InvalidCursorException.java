@@ -0,0 +1,14 @@
+package devwooki.study.querydsl.config;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+/**
+ * 클라이언트가 넘긴 keyset 커서를 해석할 수 없음 (잘못된 요청이므로 400으로 응답한다)
+ */
+@ResponseStatus(value = HttpStatus.BAD_REQUEST, reason = "Invalid cursor")
+public class InvalidCursorException extends IllegalArgumentException {
+    public InvalidCursorException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -0,0 +1,57 @@
+package devwooki.study.querydsl.config;
+
+import lombok.Getter;
+import org.springframework.util.Assert;
+import org.springframework.util.StringUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.function.Function;
+
+/**
+ * Keyset(seek) 페이징에서 "마지막으로 읽은 행"을 나타내는 커서
+ * 정렬 키 값과 tie-breaker인 id를 함께 들고 있고, 클라이언트에게는 불투명한 토큰으로만 노출한다.
+ */
+@Getter
+public class KeysetCursor<K extends Comparable<?>> {
+    private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+    private static final Base64.Decoder DECODER = Base64.getUrlDecoder();
+
+    private final K key;
+    private final Long id;
+
+    private KeysetCursor(K key, Long id) {
+        Assert.notNull(key, "Keyset key must not be null!");
+        Assert.notNull(id, "Keyset id must not be null!");
+        this.key = key;
+        this.id = id;
+    }
+
+    public static <K extends Comparable<?>> KeysetCursor<K> of(K key, Long id) {
+        return new KeysetCursor<>(key, id);
+    }
+
+    /**
+     * 토큰이 비어있으면 첫 페이지를 뜻하므로 null을 반환한다.
+     * @throws InvalidCursorException 토큰이 이 클래스가 만든 형태가 아닌 경우 (HTTP 400)
+     */
+    public static <K extends Comparable<?>> KeysetCursor<K> decode(String token, Function<String, K> keyParser) {
+        if (!StringUtils.hasText(token)) {
+            return null;
+        }
+        try {
+            String raw = new String(DECODER.decode(token), StandardCharsets.UTF_8);
+            // id는 숫자이므로 첫 번째 ':' 앞쪽이 id, 나머지는 정렬 키 (키 안에 ':'가 있어도 안전)
+            int separator = raw.indexOf(':');
+            Long id = Long.valueOf(raw.substring(0, separator));
+            return new KeysetCursor<>(keyParser.apply(raw.substring(separator + 1)), id);
+        } catch (RuntimeException e) {
+            throw new InvalidCursorException("Invalid keyset cursor: " + token, e);
+        }
+    }
+
+    public String encode() {
+        String raw = id + ":" + key;
+        return ENCODER.encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+}
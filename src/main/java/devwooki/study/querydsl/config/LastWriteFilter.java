@@ -0,0 +1,97 @@
+package devwooki.study.querydsl.config;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.Cookie;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.WebUtils;
+
+import java.io.IOException;
+import java.time.Duration;
+
+/**
+ * 같은 클라이언트의 마지막 쓰기 커밋 시각을 요청 속성(LastWrite)으로 올려두고, 커밋되면 쿠키로 내려준다.
+ * ReplicationRoutingDataSource는 요청 속성만 읽고 남긴다. (쿠키, 응답은 모른다)
+ * - 요청 : last-write 쿠키 값(벽시계 시각, epoch millis)으로 LastWrite를 만든다. HTTP 세션은 만들지 않는다.
+ * - 쓰기 커밋 : LastWrite를 바꾸고 응답에 쿠키를 추가한다. (lagTolerance 뒤에 만료)
+ *   응답이 이미 커밋됐다면(ex. 스트리밍 응답 중의 쓰기) 헤더를 보낼 수 없으므로 쿠키는 건너뛴다. -> 그 요청 안에서만 primary
+ * replication이 켜졌을 때만 등록한다. (ReplicationDataSourceConfig)
+ */
+@Slf4j
+public class LastWriteFilter extends OncePerRequestFilter {
+
+    static final String LAST_WRITE_COOKIE = "last-write";
+
+    private final Duration lagTolerance;
+
+    public LastWriteFilter(Duration lagTolerance) {
+        this.lagTolerance = lagTolerance;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        request.setAttribute(LastWrite.ATTRIBUTE, new LastWrite(fromCookie(request), response, lagTolerance));
+        filterChain.doFilter(request, response);
+    }
+
+    private static Long fromCookie(HttpServletRequest request) {
+        Cookie cookie = WebUtils.getCookie(request, LAST_WRITE_COOKIE);
+        if (cookie == null) {
+            return null;
+        }
+        try {
+            return Long.parseLong(cookie.getValue());
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * 요청 하나의 마지막 쓰기 커밋 시각
+     * 요청 밖(배치, 비동기 스레드)에서는 current()가 null이다.
+     */
+    static final class LastWrite {
+        private static final String ATTRIBUTE = LastWrite.class.getName();
+
+        private final HttpServletResponse response;
+        private final Duration lagTolerance;
+        private volatile Long committedAt;
+
+        private LastWrite(Long committedAt, HttpServletResponse response, Duration lagTolerance) {
+            this.committedAt = committedAt;
+            this.response = response;
+            this.lagTolerance = lagTolerance;
+        }
+
+        static LastWrite current() {
+            RequestAttributes request = RequestContextHolder.getRequestAttributes();
+            return request == null ? null : (LastWrite) request.getAttribute(ATTRIBUTE, RequestAttributes.SCOPE_REQUEST);
+        }
+
+        Long committedAt() {
+            return committedAt;
+        }
+
+        void committed(long at) {
+            committedAt = at;
+            if (lagTolerance.isZero()) {
+                return;
+            }
+            if (response.isCommitted()) {
+                log.debug("응답이 이미 커밋되어 last-write 쿠키를 보내지 않습니다");
+                return;
+            }
+            Cookie cookie = new Cookie(LAST_WRITE_COOKIE, Long.toString(at));
+            cookie.setPath("/");
+            cookie.setHttpOnly(true);
+            cookie.setMaxAge(Math.toIntExact(Math.max(1, (lagTolerance.toMillis() + 999) / 1000)));
+            response.addCookie(cookie);
+        }
+    }
+}
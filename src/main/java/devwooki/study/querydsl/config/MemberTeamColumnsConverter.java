@@ -0,0 +1,112 @@
+package devwooki.study.querydsl.config;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import devwooki.study.querydsl.dto.MemberTeamColumns;
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.AbstractHttpMessageConverter;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+
+/**
+ * MemberTeamColumns를 컬럼 형태로 내보내는 컨버터 (행마다 필드 이름, 팀 이름을 반복하지 않는다)
+ * - application/vnd.member-columns+json : 컬럼 JSON
+ * - application/cbor : 같은 구조를 CBOR(바이너리)로
+ * 구조 : {"size":n, "usernames":[사전], "teamNames":[사전],
+ *        "memberId":[...], "username":[사전 코드], "age":[...], "teamId":[..., null], "teamName":[사전 코드, 없으면 -1]}
+ * 리플렉션 없이 스트리밍 generator로 배열을 바로 쓴다.
+ */
+public class MemberTeamColumnsConverter extends AbstractHttpMessageConverter<MemberTeamColumns> {
+
+    public static final String COLUMNS_JSON_VALUE = "application/vnd.member-columns+json";
+    public static final MediaType COLUMNS_JSON = MediaType.parseMediaType(COLUMNS_JSON_VALUE);
+    public static final String CBOR_VALUE = "application/cbor";
+    public static final MediaType CBOR = MediaType.parseMediaType(CBOR_VALUE);
+
+    private final JsonFactory jsonFactory = new JsonFactory();
+    private final CBORFactory cborFactory = new CBORFactory();
+
+    public MemberTeamColumnsConverter() {
+        super(COLUMNS_JSON, CBOR);
+    }
+
+    @Override
+    protected boolean supports(Class<?> clazz) {
+        return MemberTeamColumns.class.isAssignableFrom(clazz);
+    }
+
+    @Override
+    protected boolean canRead(MediaType mediaType) {
+        return false; //응답 전용
+    }
+
+    @Override
+    protected MemberTeamColumns readInternal(Class<? extends MemberTeamColumns> clazz, HttpInputMessage inputMessage) {
+        throw new HttpMessageNotReadableException("MemberTeamColumns is write-only", inputMessage);
+    }
+
+    @Override
+    protected void writeInternal(MemberTeamColumns columns, HttpOutputMessage outputMessage) throws IOException {
+        MediaType contentType = outputMessage.getHeaders().getContentType();
+        write(columns, outputMessage.getBody(), contentType != null && CBOR.isCompatibleWith(contentType));
+    }
+
+    public void write(MemberTeamColumns columns, OutputStream out, boolean cbor) throws IOException {
+        try (JsonGenerator generator = cbor ? cborFactory.createGenerator(out) : jsonFactory.createGenerator(out)) {
+            int size = columns.size();
+            generator.writeStartObject();
+            generator.writeNumberField("size", size);
+            writeStrings(generator, "usernames", columns.usernameDictionary());
+            writeStrings(generator, "teamNames", columns.teamNameDictionary());
+
+            generator.writeArrayFieldStart("memberId");
+            for (int i = 0; i < size; i++) {
+                generator.writeNumber(columns.memberId(i));
+            }
+            generator.writeEndArray();
+
+            generator.writeArrayFieldStart("username");
+            for (int i = 0; i < size; i++) {
+                generator.writeNumber(columns.usernameCode(i));
+            }
+            generator.writeEndArray();
+
+            generator.writeArrayFieldStart("age");
+            for (int i = 0; i < size; i++) {
+                generator.writeNumber(columns.age(i));
+            }
+            generator.writeEndArray();
+
+            generator.writeArrayFieldStart("teamId");
+            for (int i = 0; i < size; i++) {
+                if (columns.hasTeam(i)) {
+                    generator.writeNumber(columns.teamId(i));
+                } else {
+                    generator.writeNull();
+                }
+            }
+            generator.writeEndArray();
+
+            generator.writeArrayFieldStart("teamName");
+            for (int i = 0; i < size; i++) {
+                generator.writeNumber(columns.teamNameCode(i));
+            }
+            generator.writeEndArray();
+            generator.writeEndObject();
+        }
+    }
+
+    private static void writeStrings(JsonGenerator generator, String field, List<String> values) throws IOException {
+        generator.writeArrayFieldStart(field);
+        for (String value : values) {
+            generator.writeString(value);
+        }
+        generator.writeEndArray();
+    }
+}
@@ -0,0 +1,84 @@
+package devwooki.study.querydsl.config;
+
+import com.querydsl.core.types.Expression;
+import com.querydsl.core.types.FactoryExpression;
+import com.querydsl.core.types.ParamExpression;
+import com.querydsl.jpa.JPQLSerializer;
+import com.querydsl.jpa.impl.JPAProvider;
+import com.querydsl.jpa.impl.JPAQuery;
+import com.querydsl.jpa.impl.JPAUtil;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.Query;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 미리 JPQL로 직렬화해둔 Querydsl 쿼리
+ * 조건 값 대신 Param을 넣어서 만든 쿼리를 한 번만 JPQL 문자열로 바꿔두고, 호출할 때는 Param에 값만 바인딩한다.
+ * -> 매 요청마다 BooleanExpression 트리 생성 + JPQL 직렬화를 하지 않고,
+ *    JPQL 문자열이 항상 같으므로 하이버네이트의 쿼리 플랜 캐시도 그대로 재사용된다.
+ * 불변 객체이고 EntityManager는 스프링의 공유 프록시이므로 여러 스레드에서 같이 사용해도 된다.
+ */
+public class PreparedQuery<T> {
+
+    private final EntityManager entityManager;
+    private final String jpql;
+    private final List<Object> constants; // 상수와 Param이 JPQL의 ?1, ?2 ... 순서대로 들어있다
+    private final Expression<T> projection;
+
+    private PreparedQuery(EntityManager entityManager, String jpql, List<Object> constants, Expression<T> projection) {
+        this.entityManager = entityManager;
+        this.jpql = jpql;
+        this.constants = constants;
+        this.projection = projection;
+    }
+
+    @SuppressWarnings("unchecked")
+    static <T> PreparedQuery<T> of(EntityManager entityManager, JPAQuery<T> template) {
+        JPQLSerializer serializer = new JPQLSerializer(JPAProvider.getTemplates(entityManager), entityManager);
+        serializer.serialize(template.getMetadata(), false, null);
+        return new PreparedQuery<>(entityManager, serializer.toString(),
+                List.copyOf(serializer.getConstants()),
+                (Expression<T>) template.getMetadata().getProjection());
+    }
+
+    public String getJpql() {
+        return jpql;
+    }
+
+    public List<T> fetch(Map<ParamExpression<?>, Object> bindings) {
+        return fetch(bindings, 0, -1);
+    }
+
+    public List<T> fetch(Map<ParamExpression<?>, Object> bindings, long offset, long limit) {
+        Query query = entityManager.createQuery(jpql);
+        JPAUtil.setConstants(query, constants, bindings); // 값이 없는 Param이 있으면 ParamNotSetException
+        if (offset > 0) {
+            query.setFirstResult(Math.toIntExact(offset));
+        }
+        if (limit >= 0) {
+            query.setMaxResults(Math.toIntExact(limit));
+        }
+        return transform(query.getResultList());
+    }
+
+    // JPAQuery와 마찬가지로 DTO(FactoryExpression) 프로젝션은 조회된 컬럼 배열로 객체를 만든다
+    @SuppressWarnings("unchecked")
+    private List<T> transform(List<?> rows) {
+        if (!(projection instanceof FactoryExpression)) {
+            return (List<T>) rows;
+        }
+        FactoryExpression<T> factory = (FactoryExpression<T>) projection;
+        List<T> result = new ArrayList<>(rows.size());
+        for (Object row : rows) {
+            if (row == null) {
+                result.add(null);
+            } else {
+                result.add(factory.newInstance(row.getClass().isArray() ? (Object[]) row : new Object[]{row}));
+            }
+        }
+        return result;
+    }
+}
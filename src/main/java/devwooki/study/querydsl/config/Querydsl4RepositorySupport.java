@@ -3,20 +3,33 @@ package devwooki.study.querydsl.config;
 /**
  * 스프링 데이터가 제공하는 QuerydslRepositorySupport 가 지닌 한계를 극복하기 위한 클래스
  * 1. paging을 편리하게 변환
- * 2. Content Query와 Count Query를 분리
+ * 2. Content Query와 Count Query를 분리 (Count Query를 생략하면 Content Query로부터 가벼운 Count Query를 자동으로 만든다)
  * 3. Spring Data Sort지원
  * 4. select(), selectFrom()으로 시작  가능
  * 5. Entity Manager,QueryFactory제공
+ * 6. count 결과 캐시 지원 (CountCache)
+ * 7. Keyset(seek) 페이징 지원 : offset 없이 마지막 행 이후부터 조회
+ * 8. 조건 조합(shape)별로 미리 직렬화한 쿼리(PreparedQuery) 캐시
+ * 9. 컬렉션 fetch join 페이징 (id만 먼저 페이징 -> 해당 id만 fetch join)
+ * 10. 쿼리 캐시 (selectCacheable, selectFromCacheable)
+ * 11. content 쿼리와 count 쿼리 동시 실행 (applyPaginationConcurrently)
  */
 
 import com.querydsl.core.types.EntityPath;
 import com.querydsl.core.types.Expression;
+import com.querydsl.core.types.Order;
+import com.querydsl.core.types.OrderSpecifier;
+import com.querydsl.core.types.dsl.ComparableExpression;
+import com.querydsl.core.types.dsl.Expressions;
+import com.querydsl.core.types.dsl.NumberPath;
 import com.querydsl.core.types.dsl.PathBuilder;
 import com.querydsl.jpa.impl.JPAQuery;
 import com.querydsl.jpa.impl.JPAQueryFactory;
 import jakarta.annotation.PostConstruct;
 import jakarta.persistence.EntityManager;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.support.JpaEntityInformation;
@@ -29,8 +42,14 @@ import org.springframework.data.support.PageableExecutionUtils;
 import org.springframework.stereotype.Repository;
 import org.springframework.util.Assert;
 
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Function;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
 
 /**
  * Querydsl 4.x 버전에 맞춘 Querydsl 지원 라이브러리
@@ -45,6 +64,10 @@ public abstract class Querydsl4RepositorySupport {
     private Querydsl querydsl;
     private EntityManager entityManager;
     private JPAQueryFactory queryFactory;
+    private CountCache countCache;
+    private CountQueryExecutor countQueryExecutor;
+    private int maxPageSize = 2000;
+    private final Map<Object, PreparedQuery<?>> preparedQueries = new ConcurrentHashMap<>();
 
     public Querydsl4RepositorySupport(Class<?> domainClass) {
         Assert.notNull(domainClass, "Domain class must not be null!");
@@ -64,11 +87,29 @@ public abstract class Querydsl4RepositorySupport {
         this.queryFactory = new JPAQueryFactory(entityManager);
     }
 
+    @Autowired
+    public void setCountCache(CountCache countCache) {
+        this.countCache = countCache;
+    }
+
+    @Autowired
+    public void setCountQueryExecutor(CountQueryExecutor countQueryExecutor) {
+        this.countQueryExecutor = countQueryExecutor;
+    }
+
+    //Pageable과 같은 최대 페이지 크기를 keyset 페이징에도 적용한다
+    @Value("${spring.data.web.pageable.max-page-size:2000}")
+    public void setMaxPageSize(int maxPageSize) {
+        this.maxPageSize = maxPageSize;
+    }
+
     @PostConstruct
     public void validate() {
         Assert.notNull(entityManager, "EntityManager must not be null!");
         Assert.notNull(querydsl, "Querydsl must not be null!");
         Assert.notNull(queryFactory, "QueryFactory must not be null!");
+        Assert.notNull(countCache, "CountCache must not be null!");
+        Assert.notNull(countQueryExecutor, "CountQueryExecutor must not be null!");
     }
 
     protected JPAQueryFactory getQueryFactory() {
@@ -91,13 +132,73 @@ public abstract class Querydsl4RepositorySupport {
         return getQueryFactory().selectFrom(from);
     }
 
+    /**
+     * 하이버네이트 쿼리 캐시를 사용하는 쿼리
+     * 조회 대상 테이블이 변경되면 (update-timestamps) 캐시된 결과는 자동으로 무효화된다.
+     * 엔티티를 조회하면 id만 캐시되므로 해당 엔티티도 2차 캐시 대상(@Cache)이어야 효과가 있다.
+     * @param region 쿼리 결과를 보관할 region (null이면 default-query-results-region)
+     */
+    protected <T> JPAQuery<T> selectCacheable(Expression<T> expr, String region) {
+        return cacheable(select(expr), region);
+    }
+
+    protected <T> JPAQuery<T> selectFromCacheable(EntityPath<T> from, String region) {
+        return cacheable(selectFrom(from), region);
+    }
+
+    private static <T> JPAQuery<T> cacheable(JPAQuery<T> query, String region) {
+        query.setHint(HibernateHints.HINT_CACHEABLE, true);
+        if (region != null) {
+            query.setHint(HibernateHints.HINT_CACHE_REGION, region);
+        }
+        return query;
+    }
+
+    /**
+     * shapeKey별로 한 번만 template 쿼리를 만들어 JPQL로 직렬화해두고 재사용한다.
+     * template에는 조건 값 대신 Param을 사용하고, 어떤 조건이 포함되는지(shape)가 같으면 같은 shapeKey를 써야 한다.
+     * shape의 종류는 유한해야 한다. (ex. 검색 조건 4개의 유무 -> 16가지)
+     */
+    @SuppressWarnings("unchecked")
+    protected <T> PreparedQuery<T> prepared(Object shapeKey, Supplier<JPAQuery<T>> template) {
+        return (PreparedQuery<T>) preparedQueries.computeIfAbsent(shapeKey,
+                key -> PreparedQuery.of(getEntityManager(), template.get()));
+    }
+
+    /**
+     * Content Query를 기반으로 만든 Count Query
+     * 프로젝션, order by, 조건에서 참조하지 않는 to-one left join과 left fetch join을 제거하고
+     * 남은 컬렉션 fetch join이 있으면 root 엔티티를 count(distinct)로 센다.
+     * group by / distinct 쿼리는 그룹(행) 개수를 from절 서브쿼리로 DB에서 센다.
+     */
+    protected LongSupplier countOf(JPAQuery<?> contentQuery) {
+        return CountQueryDeriver.derive(getEntityManager(), contentQuery);
+    }
+
+    /**
+     * countOf와 같지만 결과를 CountCache에 보관한다.
+     * @param countKey 같은 행 집합을 세는 요청끼리 같아야 하는 키 (ex. 정규화된 검색조건)
+     */
+    protected LongSupplier cachedCountOf(Object countKey, JPAQuery<?> contentQuery) {
+        return countCache.cached(List.of(domainClass, countKey), countOf(contentQuery));
+    }
+
+    protected <T> Page<T> applyPagination(Pageable pageable, Object countKey,
+                                          Function<JPAQueryFactory, JPAQuery> contentQuery) {
+        JPAQuery jpaQuery = contentQuery.apply(getQueryFactory());
+        LongSupplier total = cachedCountOf(countKey, jpaQuery);
+        List<T> content = getQuerydsl().applyPagination(pageable,
+                jpaQuery).fetch();
+        return PageableExecutionUtils.getPage(content, pageable, total);
+    }
+
     protected <T> Page<T> applyPagination(Pageable pageable,
                                           Function<JPAQueryFactory, JPAQuery> contentQuery) {
         JPAQuery jpaQuery = contentQuery.apply(getQueryFactory());
+        LongSupplier total = countOf(jpaQuery);
         List<T> content = getQuerydsl().applyPagination(pageable,
                 jpaQuery).fetch();
-        return PageableExecutionUtils.getPage(content, pageable,
-                jpaQuery::fetchCount);
+        return PageableExecutionUtils.getPage(content, pageable, total);
     }
 
     protected <T> Page<T> applyPagination(Pageable pageable,
@@ -110,4 +211,91 @@ public abstract class Querydsl4RepositorySupport {
         return PageableExecutionUtils.getPage(content, pageable,
                 countResult::fetchCount);
     }
+
+    /**
+     * count 쿼리를 content 쿼리와 동시에 실행하는 페이징
+     * 순차 실행이면 응답 시간이 content + count 이지만, 동시에 실행하면 둘 중 느린 쪽이 된다.
+     * count는 CountQueryExecutor에서 별도 커넥션/읽기 전용 트랜잭션으로 실행되므로
+     * 같은 트랜잭션에서 방금 변경한 내용까지 세어야 하는 곳에서는 사용하지 않는다.
+     * PageableExecutionUtils가 count가 필요 없다고 판단하면 (첫 페이지가 덜 찼거나 마지막 페이지) count 작업은 취소된다.
+     * 커넥션 풀이 고갈되어 count가 시작하지 못하면 이 스레드에서 센다. (CountQueryExecutor 참고)
+     */
+    protected <T> Page<T> applyPaginationConcurrently(Pageable pageable,
+                                                      Function<JPAQueryFactory, JPAQuery> contentQuery) {
+        JPAQuery jpaQuery = contentQuery.apply(getQueryFactory());
+        CountQueryExecutor.PendingCount total = countQueryExecutor.submit(countOf(jpaQuery));
+        try {
+            List<T> content = getQuerydsl().applyPagination(pageable,
+                    jpaQuery).fetch();
+            return PageableExecutionUtils.getPage(content, pageable, total::await);
+        } finally {
+            total.cancel();
+        }
+    }
+
+    /**
+     * 컬렉션 fetch join 페이징 (2단계)
+     * 일대다 fetch join에 페이징을 걸면 하이버네이트가 전체 행을 읽은 뒤 메모리에서 자른다. (HHH90003004)
+     * 1. idQuery로 루트 엔티티의 id만 페이징해서 조회 (정렬, count도 여기서)
+     * 2. fetchQuery에 id in (...) 조건을 붙여 전체 그래프를 fetch join으로 조회한 뒤 1번의 순서대로 정렬
+     *
+     * @param idQuery    루트 엔티티 + 조건 (행이 늘어나는 to-many join은 넣지 않는다)
+     * @param fetchQuery 루트 엔티티 + fetch join (조건, 정렬은 필요 없다)
+     */
+    protected <T> Page<T> applyPaginationByIds(Pageable pageable, NumberPath<Long> idPath, Function<T, Long> idOf,
+                                               Function<JPAQueryFactory, JPAQuery<?>> idQuery,
+                                               Function<JPAQueryFactory, JPAQuery<T>> fetchQuery) {
+        JPAQuery<?> rootQuery = idQuery.apply(getQueryFactory());
+        LongSupplier total = countOf(rootQuery);
+        List<Long> ids = getQuerydsl().applyPagination(pageable, rootQuery.select(idPath)).fetch();
+        if (ids.isEmpty()) {
+            return PageableExecutionUtils.getPage(List.of(), pageable, total);
+        }
+
+        Map<Long, Integer> order = new HashMap<>();
+        for (int i = 0; i < ids.size(); i++) {
+            order.put(ids.get(i), i);
+        }
+        List<T> content = fetchQuery.apply(getQueryFactory())
+                .where(idPath.in(ids))
+                .distinct()
+                .fetch();
+        content.sort(Comparator.comparing(row -> order.get(idOf.apply(row))));
+        return PageableExecutionUtils.getPage(content, pageable, total);
+    }
+
+    /**
+     * Keyset(seek) 페이징
+     * offset은 앞 페이지의 행을 모두 읽고 버리기 때문에 뒤 페이지로 갈수록 느려진다.
+     * (sortKey, id) 가 커서보다 큰 행부터 size + 1개만 읽으므로 몇 번째 페이지든 비용이 같다.
+     * sortKey에는 인덱스가 걸린 null이 아닌 컬럼을, idPath는 동일한 sortKey 사이의 순서를 정하는 tie-breaker로 사용한다.
+     *
+     * @param cursor 이전 페이지의 마지막 행, 첫 페이지면 null
+     * @param size   요청한 크기, Pageable처럼 1 ~ max-page-size 로 맞춘다
+     */
+    protected <T, K extends Comparable<?>> CursorPage<T> applyKeysetPagination(KeysetCursor<K> cursor, int size,
+                                                                               Expression<K> sortKey, NumberPath<Long> idPath,
+                                                                               Function<T, K> sortKeyOf, Function<T, Long> idOf,
+                                                                               Function<JPAQueryFactory, JPAQuery<T>> contentQuery) {
+        int pageSize = Math.max(1, Math.min(size, maxPageSize));
+        ComparableExpression<K> key = Expressions.asComparable(sortKey);
+
+        JPAQuery<T> query = contentQuery.apply(getQueryFactory());
+        if (cursor != null) {
+            query.where(key.gt(cursor.getKey())
+                    .or(key.eq(cursor.getKey()).and(idPath.gt(cursor.getId()))));
+        }
+        List<T> rows = query
+                .orderBy(new OrderSpecifier<>(Order.ASC, key), idPath.asc())
+                .limit(pageSize + 1) // 한 건 더 읽어서 다음 페이지 존재 여부를 판단
+                .fetch();
+
+        if (rows.size() <= pageSize) {
+            return new CursorPage<>(rows, pageSize, null);
+        }
+        List<T> content = rows.subList(0, pageSize);
+        T last = content.get(pageSize - 1);
+        String nextCursor = KeysetCursor.of(sortKeyOf.apply(last), idOf.apply(last)).encode();
+        return new CursorPage<>(content, pageSize, nextCursor);
+    }
 }
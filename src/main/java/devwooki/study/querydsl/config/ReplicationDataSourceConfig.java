@@ -0,0 +1,56 @@
+package devwooki.study.querydsl.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+
+/**
+ * primary / replica 데이터소스 라우팅 (querydsl.replication.enabled=true 일 때만)
+ * - primary : spring.datasource.* (기존 설정 그대로)
+ * - replica : querydsl.replication.replica.* (jdbc-url, username, password, maximum-pool-size ...)
+ * - querydsl.replication.lag-tolerance : 쓰기 트랜잭션이 커밋된 뒤 이 시간 동안은 같은 클라이언트(last-write 쿠키, LastWriteFilter)의 읽기도 primary로 보낸다.
+ */
+@Configuration
+@ConditionalOnProperty(name = "querydsl.replication.enabled", havingValue = "true")
+public class ReplicationDataSourceConfig {
+
+    @Bean
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource primaryDataSource(DataSourceProperties properties) {
+        HikariDataSource dataSource = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        dataSource.setPoolName("primary");
+        return dataSource;
+    }
+
+    @Bean
+    @ConfigurationProperties("querydsl.replication.replica")
+    public HikariDataSource replicaDataSource() {
+        HikariDataSource dataSource = DataSourceBuilder.create().type(HikariDataSource.class).build();
+        dataSource.setPoolName("replica");
+        dataSource.setReadOnly(true);
+        return dataSource;
+    }
+
+    @Bean
+    @Primary
+    public DataSource dataSource(HikariDataSource primaryDataSource, HikariDataSource replicaDataSource,
+                                 @Value("${querydsl.replication.lag-tolerance:1s}") Duration lagTolerance) {
+        return new LazyConnectionDataSourceProxy(
+                new ReplicationRoutingDataSource(primaryDataSource, replicaDataSource, lagTolerance));
+    }
+
+    @Bean
+    public LastWriteFilter lastWriteFilter(@Value("${querydsl.replication.lag-tolerance:1s}") Duration lagTolerance) {
+        return new LastWriteFilter(lagTolerance);
+    }
+}
@@ -0,0 +1,121 @@
+package devwooki.study.querydsl.config;
+
+import devwooki.study.querydsl.config.LastWriteFilter.LastWrite;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * 트랜잭션의 readOnly 여부로 primary / replica 를 고른다.
+ * 1. @Transactional(readOnly = true) -> replica, 그 외(쓰기 트랜잭션, 트랜잭션 없음) -> primary
+ * 2. onPrimary(...) 안에서 시작한 트랜잭션은 readOnly여도 primary에서 읽는다.
+ * 3. 같은 클라이언트의 쓰기 트랜잭션이 lagTolerance 이내에 커밋됐다면 primary에서 읽는다. (방금 쓴 값이 replica에 아직 없을 수 있다)
+ *    - 커밋 시각은 커넥션을 얻을 때가 아니라 afterCommit에서 남긴다. (롤백된 쓰기, 오래 걸린 쓰기 트랜잭션도 정확하다)
+ *    - 요청을 처리하는 스레드는 재사용되므로 스레드가 아니라 요청 속성(LastWrite)에 남긴다.
+ *      다음 요청으로 넘기는 쿠키는 LastWriteFilter가 맡는다. 쿠키 값은 벽시계 시각(epoch millis)이므로 다른 인스턴스나 재시작 후에도 통한다.
+ *      (인스턴스 간 시계 차이는 lagTolerance 안에서 허용한다)
+ *    - 요청 밖(배치, 비동기 스레드)에서는 남기지 않는다. -> 요청 밖에서 방금 쓴 값을 읽어야 하면 onPrimary(...)를 사용한다.
+ * 주의 : 커넥션을 얻는 시점에 readOnly가 결정되어 있어야 하므로 반드시 LazyConnectionDataSourceProxy로 감싸서 사용한다.
+ *       (JpaTransactionManager는 트랜잭션 동기화 정보를 설정하기 전에 커넥션을 요청한다)
+ */
+public class ReplicationRoutingDataSource extends AbstractRoutingDataSource {
+
+    public enum Target {PRIMARY, REPLICA}
+
+    private static final ThreadLocal<Integer> FORCE_PRIMARY = ThreadLocal.withInitial(() -> 0);
+
+    private final Object writeSynchronizationKey = new Object();
+    private final long lagToleranceMillis;
+
+    public ReplicationRoutingDataSource(DataSource primary, DataSource replica, Duration lagTolerance) {
+        setTargetDataSources(Map.of(Target.PRIMARY, primary, Target.REPLICA, replica));
+        setDefaultTargetDataSource(primary);
+        this.lagToleranceMillis = lagTolerance.toMillis();
+        afterPropertiesSet();
+    }
+
+    /**
+     * action 안에서 시작하는 트랜잭션은 모두 primary를 사용한다. (ex. 방금 쓴 값을 반드시 읽어야 하는 경우)
+     * 이미 시작된 트랜잭션의 커넥션은 바뀌지 않으므로 트랜잭션 바깥에서 호출해야 한다.
+     */
+    public static <T> T onPrimary(Supplier<T> action) {
+        FORCE_PRIMARY.set(FORCE_PRIMARY.get() + 1);
+        try {
+            return action.get();
+        } finally {
+            int depth = FORCE_PRIMARY.get() - 1;
+            if (depth == 0) {
+                FORCE_PRIMARY.remove();
+            } else {
+                FORCE_PRIMARY.set(depth);
+            }
+        }
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        if (TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            return primaryRequired() ? Target.PRIMARY : Target.REPLICA;
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()
+                && !TransactionSynchronizationManager.hasResource(writeSynchronizationKey)) {
+            LastWrite lastWrite = LastWrite.current();
+            if (lastWrite != null) {
+                WriteCommitted committed = new WriteCommitted(lastWrite);
+                TransactionSynchronizationManager.bindResource(writeSynchronizationKey, committed);
+                TransactionSynchronizationManager.registerSynchronization(committed);
+            }
+        }
+        return Target.PRIMARY;
+    }
+
+    private boolean primaryRequired() {
+        if (FORCE_PRIMARY.get() > 0) {
+            return true;
+        }
+        LastWrite lastWrite = LastWrite.current();
+        Long written = lastWrite == null ? null : lastWrite.committedAt();
+        if (written == null) {
+            return false;
+        }
+        long elapsed = System.currentTimeMillis() - written;
+        return -lagToleranceMillis < elapsed && elapsed < lagToleranceMillis;
+    }
+
+    /**
+     * 쓰기 트랜잭션마다 하나 등록되어, 커밋되면 LastWrite에 커밋 시각을 남긴다.
+     * 요청 스레드에서 커밋되므로 등록할 때 잡아둔 LastWrite를 그대로 쓴다.
+     */
+    private final class WriteCommitted implements TransactionSynchronization {
+        private final LastWrite lastWrite;
+
+        WriteCommitted(LastWrite lastWrite) {
+            this.lastWrite = lastWrite;
+        }
+
+        @Override
+        public void suspend() {
+            TransactionSynchronizationManager.unbindResource(writeSynchronizationKey);
+        }
+
+        @Override
+        public void resume() {
+            TransactionSynchronizationManager.bindResource(writeSynchronizationKey, this);
+        }
+
+        @Override
+        public void afterCommit() {
+            lastWrite.committed(System.currentTimeMillis());
+        }
+
+        @Override
+        public void afterCompletion(int status) {
+            TransactionSynchronizationManager.unbindResourceIfPossible(writeSynchronizationKey);
+        }
+    }
+}
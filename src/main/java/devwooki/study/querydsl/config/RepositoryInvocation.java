@@ -0,0 +1,75 @@
+package devwooki.study.querydsl.config;
+
+import devwooki.study.querydsl.dto.MemberSearchCondition;
+import lombok.Getter;
+
+import java.util.concurrent.Callable;
+
+/**
+ * 지금 스레드에서 실행 중인 레포지토리 메서드와 검색 조건
+ * RepositoryMetricsAspect가 메서드에 들어갈 때 enter, 나올 때 exit 한다.
+ * JDBC 리스너(SlowQueryLogger)처럼 SQL만 보이는 곳에서 "어떤 메서드의 어떤 조건"이 만든 SQL인지 알기 위해 사용한다.
+ * 다른 스레드에서 실행되는 작업(CountQueryExecutor의 count 쿼리)은 propagate로 감싸서 넘긴다.
+ */
+@Getter
+public final class RepositoryInvocation {
+
+    private static final ThreadLocal<RepositoryInvocation> CURRENT = new ThreadLocal<>();
+
+    private final String method;               //클래스.메서드
+    private final MemberSearchCondition condition; //없으면 null
+    private final RepositoryInvocation parent;
+
+    private RepositoryInvocation(String method, MemberSearchCondition condition, RepositoryInvocation parent) {
+        this.method = method;
+        this.condition = condition;
+        this.parent = parent;
+    }
+
+    /**
+     * 레포지토리 메서드에 들어간다. 반드시 finally에서 exit 해야 한다.
+     * 안쪽 메서드에 조건 인자가 없으면 바깥 메서드의 조건을 이어받는다.
+     */
+    public static RepositoryInvocation enter(String method, MemberSearchCondition condition) {
+        RepositoryInvocation parent = CURRENT.get();
+        if (condition == null && parent != null) {
+            condition = parent.condition;
+        }
+        RepositoryInvocation invocation = new RepositoryInvocation(method, condition, parent);
+        CURRENT.set(invocation);
+        return invocation;
+    }
+
+    public void exit() {
+        if (parent == null) {
+            CURRENT.remove();
+        } else {
+            CURRENT.set(parent);
+        }
+    }
+
+    public static RepositoryInvocation current() {
+        return CURRENT.get();
+    }
+
+    // 지금 호출 정보를 작업을 실행하는 스레드에서도 보이도록 감싼다 (호출 스레드에서 바로 실행되어도 안전하다)
+    public static <T> Callable<T> propagate(Callable<T> task) {
+        RepositoryInvocation captured = CURRENT.get();
+        if (captured == null) {
+            return task;
+        }
+        return () -> {
+            RepositoryInvocation previous = CURRENT.get();
+            CURRENT.set(captured);
+            try {
+                return task.call();
+            } finally {
+                if (previous == null) {
+                    CURRENT.remove();
+                } else {
+                    CURRENT.set(previous);
+                }
+            }
+        };
+    }
+}
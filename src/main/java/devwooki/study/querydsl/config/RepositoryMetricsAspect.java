@@ -0,0 +1,110 @@
+package devwooki.study.querydsl.config;
+
+import devwooki.study.querydsl.dto.MemberSearchCondition;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.RequiredArgsConstructor;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.data.domain.Slice;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.Optional;
+
+/**
+ * 레포지토리 메서드 메트릭
+ * - repository.invocations : 실행 시간 히스토그램 (method, outcome = success / error)
+ * - repository.calls : 호출 수 (method, condition, outcome)
+ * - repository.rows : 반환한 행 수 (method, condition)
+ * - repository.errors : 예외 수 (method, condition, exception)
+ * condition(MemberSearchCondition에서 값이 있는 필드들) 태그로 자주 쓰이는 / 실패하는 / 많이 읽는 검색 조합을 찾는다.
+ * 히스토그램은 태그 조합마다 버킷 수십 개를 시계열로 만들므로 condition(최대 32가지) 태그를 붙이지 않는다.
+ * 조합별로 느린 검색은 SlowQueryLogger 로그(출처의 method, condition)로 찾는다.
+ * 조건 값 자체는 태그로 쓰지 않는다. (태그 종류가 무한히 늘어난다)
+ * 실행 중에는 메서드와 조건을 RepositoryInvocation에 올려둔다. (SlowQueryLogger가 느린 SQL의 출처로 사용)
+ */
+@Aspect
+@Component
+@RequiredArgsConstructor
+public class RepositoryMetricsAspect {
+
+    private final MeterRegistry registry;
+
+    @Around("within(devwooki.study.querydsl.repository.MemberJpaRepository)" +
+            " || within(devwooki.study.querydsl.repository.MemberRepositoryImpl)" +
+            " || within(devwooki.study.querydsl.repository.MemberTestRepository)")
+    public Object measure(ProceedingJoinPoint joinPoint) throws Throwable {
+        String method = joinPoint.getSignature().getDeclaringType().getSimpleName()
+                + "." + joinPoint.getSignature().getName();
+        MemberSearchCondition searchCondition = searchCondition(joinPoint.getArgs());
+        String condition = searchCondition == null ? "n/a" : searchCondition.shape();
+
+        RepositoryInvocation invocation = RepositoryInvocation.enter(method, searchCondition);
+        Timer.Sample sample = Timer.start(registry);
+        try {
+            Object result = joinPoint.proceed();
+            sample.stop(timer(method, "success"));
+            registry.counter("repository.calls", "method", method, "condition", condition, "outcome", "success").increment();
+            recordRows(method, condition, result);
+            return result;
+        } catch (Throwable e) {
+            sample.stop(timer(method, "error"));
+            registry.counter("repository.calls", "method", method, "condition", condition, "outcome", "error").increment();
+            registry.counter("repository.errors",
+                    "method", method, "condition", condition, "exception", e.getClass().getSimpleName()).increment();
+            throw e;
+        } finally {
+            invocation.exit();
+        }
+    }
+
+    private Timer timer(String method, String outcome) {
+        return Timer.builder("repository.invocations")
+                .tag("method", method)
+                .tag("outcome", outcome)
+                .publishPercentileHistogram()
+                .register(registry);
+    }
+
+    private void recordRows(String method, String condition, Object result) {
+        long rows = rowCount(result);
+        if (rows < 0) {
+            return;
+        }
+        DistributionSummary.builder("repository.rows")
+                .baseUnit("rows")
+                .tag("method", method)
+                .tag("condition", condition)
+                .register(registry)
+                .record(rows);
+    }
+
+    // 행 수를 알 수 없는 반환 타입(void, count 등)은 -1
+    private static long rowCount(Object result) {
+        if (result instanceof Collection<?> collection) {
+            return collection.size();
+        }
+        if (result instanceof Slice<?> slice) {
+            return slice.getNumberOfElements();
+        }
+        if (result instanceof CursorPage<?> page) {
+            return page.getContent().size();
+        }
+        if (result instanceof Optional<?> optional) {
+            return optional.isPresent() ? 1 : 0;
+        }
+        return -1;
+    }
+
+    private static MemberSearchCondition searchCondition(Object[] args) {
+        for (Object arg : args) {
+            if (arg instanceof MemberSearchCondition condition) {
+                return condition;
+            }
+        }
+        return null;
+    }
+}
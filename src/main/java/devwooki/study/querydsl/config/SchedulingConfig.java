@@ -0,0 +1,12 @@
+package devwooki.study.querydsl.config;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableAsync;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+//주기 작업, 비동기 작업 (TeamStatisticsReconciler)
+@Configuration
+@EnableScheduling
+@EnableAsync
+public class SchedulingConfig {
+}
@@ -0,0 +1,141 @@
+package devwooki.study.querydsl.config;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import devwooki.study.querydsl.dto.MemberTeamColumns;
+import devwooki.study.querydsl.entity.EntityChangedEvent;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.data.domain.Slice;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * 검색 결과(List<MemberTeamDTO>, Page) 캐시
+ * 같은 검색조건 + 페이지 요청이 반복되므로 결과 자체를 보관한다. (Caffeine : 크기 제한 + W-TinyLFU로 자주 쓰는 키를 남긴다)
+ * 크기는 항목 수가 아니라 행 수(weight)로 제한한다. 컬럼 형태(MemberTeamColumns)는 조건 없는 검색이면 전체 행이 되므로
+ * 항목 수로 제한하면 메모리 사용량을 알 수 없다. maximum-weight보다 큰 결과 하나는 보관하지 않는다.
+ * 1. refresh-after 가 지난 키가 다시 조회되면 기존 값을 바로 돌려주고 백그라운드에서 새로 조회한다. (stale-while-refresh)
+ *    -> 자주 조회되는 키는 만료되기 전에 계속 갱신되고, 새로 조회하는 동안 DB가 느리거나 실패해도 기존 값을 계속 준다.
+ * 2. ttl 이 지나면 (갱신되지 못한 값은) 버린다.
+ * 3. Member/Team이 변경되면 전부 비운다. (트랜잭션이 끝난 뒤)
+ *    키에는 조회를 시작할 때의 세대(generation)가 들어간다. 비울 때 세대를 올리므로
+ *    변경 전에 시작해서 비운 뒤에 끝난 조회(갱신 포함)는 이전 세대 키에 저장되어 다시 나가지 않는다. (CountCache와 같은 방식)
+ * 4. 값과 함께 조회를 시작할 때의 버전(ex. TableVersions ETag)을 보관한다. (versioned)
+ *    -> 응답의 ETag는 지금 버전이 아니라 내보내는 값이 만들어진 버전이어야 한다. (변경 직후 예전 값이 새 ETag로 나가지 않도록)
+ * 메트릭 : cache.gets{cache=search-result, result=hit|miss}, cache.size ...
+ */
+@Component
+public class SearchResultCache {
+
+    private final LoadingCache<Key, Versioned<?>> cache;
+    private final AtomicLong generation = new AtomicLong();
+
+    public SearchResultCache(MeterRegistry registry,
+                             @Value("${querydsl.result-cache.maximum-weight:100000}") long maximumWeight,
+                             @Value("${querydsl.result-cache.ttl:5m}") Duration ttl,
+                             @Value("${querydsl.result-cache.refresh-after:30s}") Duration refreshAfter) {
+        this.cache = Caffeine.newBuilder()
+                .maximumWeight(maximumWeight)
+                .weigher((Key key, Versioned<?> value) -> weigh(value.value()))
+                .expireAfterWrite(ttl)
+                .refreshAfterWrite(refreshAfter)
+                .recordStats()
+                .build(key -> {
+                    String version = key.version.get(); //조회하기 전에 읽는다 (조회 도중 변경되면 이전 버전으로 남는다)
+                    return new Versioned<>(key.loader.get(), version);
+                });
+        CaffeineCacheMetrics.monitor(registry, cache, "search-result");
+    }
+
+    /**
+     * @param name   조회 종류 (ex. "searchWhere") -> 같은 key라도 종류가 다르면 다른 값
+     * @param key    equals/hashCode가 구현된 값 (ex. 정규화된 MemberSearchCondition, Pageable)
+     * @param loader 캐시에 없거나 갱신할 때 실행할 조회, 요청 스레드가 아닌 곳에서도 실행될 수 있으므로 요청 상태에 의존하면 안된다
+     */
+    public <T> T get(String name, List<?> key, Supplier<T> loader) {
+        return versioned(name, key, () -> null, loader).value();
+    }
+
+    /**
+     * get과 같지만 값이 만들어질 때의 버전을 함께 돌려준다.
+     * @param version loader 직전에 실행된다. 갱신(refresh)할 때도 다시 읽는다.
+     */
+    @SuppressWarnings("unchecked")
+    public <T> Versioned<T> versioned(String name, List<?> key, Supplier<String> version, Supplier<T> loader) {
+        return (Versioned<T>) cache.get(new Key(generation.get(), name, key, version, loader));
+    }
+
+    //행 수 (빈 결과도 1)
+    static int weigh(Object value) {
+        int rows;
+        if (value instanceof MemberTeamColumns) {
+            rows = ((MemberTeamColumns) value).size();
+        } else if (value instanceof Collection) {
+            rows = ((Collection<?>) value).size();
+        } else if (value instanceof Slice) {
+            rows = ((Slice<?>) value).getNumberOfElements();
+        } else {
+            rows = 1;
+        }
+        return Math.max(1, rows);
+    }
+
+    public void invalidateAll() {
+        generation.incrementAndGet();
+        cache.invalidateAll();
+    }
+
+    @Order(Ordered.HIGHEST_PRECEDENCE) //TableVersions보다 먼저 비운다
+    @EventListener
+    public void onEntityChanged(EntityChangedEvent event) {
+        invalidateAll();
+    }
+
+    public record Versioned<T>(T value, String version) {
+    }
+
+    //version, loader는 키 비교에서 제외한다 (처음 들어온 요청의 것으로 갱신한다)
+    private static final class Key {
+        private final long generation;
+        private final String name;
+        private final List<?> values;
+        private final Supplier<String> version;
+        private final Supplier<?> loader;
+
+        private Key(long generation, String name, List<?> values, Supplier<String> version, Supplier<?> loader) {
+            this.generation = generation;
+            this.name = name;
+            this.values = values;
+            this.version = version;
+            this.loader = loader;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return generation == other.generation && name.equals(other.name) && values.equals(other.values);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(generation, name, values);
+        }
+    }
+}
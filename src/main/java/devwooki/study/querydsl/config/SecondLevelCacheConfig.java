@@ -0,0 +1,89 @@
+package devwooki.study.querydsl.config;
+
+import com.github.benmanes.caffeine.jcache.configuration.CaffeineConfiguration;
+import com.github.benmanes.caffeine.jcache.spi.CaffeineCachingProvider;
+import lombok.Getter;
+import lombok.Setter;
+import org.hibernate.cache.jcache.ConfigSettings;
+import org.hibernate.cfg.AvailableSettings;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.cache.CacheManager;
+import javax.cache.Caching;
+import javax.cache.spi.CachingProvider;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.OptionalLong;
+
+/**
+ * 하이버네이트 2차 캐시 + 쿼리 캐시 (JCache + Caffeine, 로컬 메모리)
+ * 1. region별 크기/TTL은 querydsl.second-level-cache.regions 에서 설정하고, 여기서 미리 캐시를 만들어 둔다.
+ * 2. 설정에 없는 region은 기본 설정으로 만든다. (missing_cache_strategy=create)
+ * 3. 통계(generate_statistics)를 켜서 hibernate-micrometer가 region별 hit/miss를 /actuator/metrics 로 노출한다.
+ *    (hibernate.second.level.cache.requests, hibernate.query.cache.requests)
+ */
+@Configuration
+@EnableConfigurationProperties(SecondLevelCacheConfig.SecondLevelCacheProperties.class)
+public class SecondLevelCacheConfig {
+
+    /**
+     * 스프링 컨텍스트마다 자기 CacheManager를 만들고, 컨텍스트가 닫힐 때 같이 닫는다.
+     * Caching은 (ClassLoader, URI)마다 CacheManager를 하나만 두고 JVM 전체에서 공유한다.
+     * -> 기본 매니저를 닫으면 같은 JVM의 다른 컨텍스트(ex. 설정이 다른 테스트 컨텍스트)가 쓰던 캐시도 닫힌다.
+     * 부모에게 위임만 하는 컨텍스트 전용 ClassLoader를 키로 사용한다. (URI는 기본값 그대로라 Caffeine 설정 해석은 같다)
+     */
+    @Bean(destroyMethod = "close")
+    public CacheManager hibernateCacheManager(SecondLevelCacheProperties properties) {
+        CachingProvider provider = Caching.getCachingProvider(CaffeineCachingProvider.class.getName());
+        ClassLoader contextKey = new ClassLoader(SecondLevelCacheConfig.class.getClassLoader()) {
+        };
+        CacheManager cacheManager = provider.getCacheManager(provider.getDefaultURI(), contextKey);
+        properties.getRegions().forEach((name, region) -> {
+            if (cacheManager.getCache(name) == null) {
+                cacheManager.createCache(name, region.toConfiguration());
+            }
+        });
+        return cacheManager;
+    }
+
+    @Bean
+    public HibernatePropertiesCustomizer secondLevelCacheCustomizer(CacheManager hibernateCacheManager,
+                                                                    SecondLevelCacheProperties properties) {
+        return hibernateProperties -> {
+            hibernateProperties.putIfAbsent(AvailableSettings.USE_SECOND_LEVEL_CACHE, properties.isEnabled());
+            hibernateProperties.putIfAbsent(AvailableSettings.USE_QUERY_CACHE, properties.isEnabled());
+            hibernateProperties.putIfAbsent(AvailableSettings.CACHE_REGION_FACTORY, "jcache");
+            hibernateProperties.putIfAbsent(ConfigSettings.CACHE_MANAGER, hibernateCacheManager);
+            hibernateProperties.putIfAbsent(ConfigSettings.MISSING_CACHE_STRATEGY, "create");
+            hibernateProperties.putIfAbsent(AvailableSettings.GENERATE_STATISTICS, true);
+        };
+    }
+
+    @Getter @Setter
+    @ConfigurationProperties("querydsl.second-level-cache")
+    public static class SecondLevelCacheProperties {
+        private boolean enabled = true;
+        private Map<String, Region> regions = new LinkedHashMap<>();
+    }
+
+    @Getter @Setter
+    public static class Region {
+        private long maximumSize = 1000;
+        private Duration ttl; //없으면 만료시키지 않는다 (update-timestamps region은 만료되면 안된다)
+
+        CaffeineConfiguration<Object, Object> toConfiguration() {
+            CaffeineConfiguration<Object, Object> configuration = new CaffeineConfiguration<>();
+            configuration.setMaximumSize(OptionalLong.of(maximumSize));
+            if (ttl != null) {
+                configuration.setExpireAfterWrite(OptionalLong.of(ttl.toNanos()));
+            }
+            configuration.setStatisticsEnabled(true);
+            return configuration;
+        }
+    }
+}
@@ -0,0 +1,185 @@
+package devwooki.study.querydsl.config;
+
+import com.p6spy.engine.common.PreparedStatementInformation;
+import com.p6spy.engine.common.StatementInformation;
+import com.p6spy.engine.common.Value;
+import com.p6spy.engine.event.SimpleJdbcEventListener;
+import devwooki.study.querydsl.dto.MemberSearchCondition;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * 느린 쿼리 로그 (p6spy 리스너)
+ * threshold보다 오래 걸린 SQL을 다음 정보와 함께 경고 로그로 남긴다.
+ * - 실행 시간, SQL 템플릿(?), 바인딩 값의 타입 (값 자체는 개인정보일 수 있으므로 남기지 않는다)
+ * - 호출한 레포지토리 메서드와 검색 조건 (RepositoryInvocation, 레포지토리 밖에서 실행된 SQL은 n/a)
+ * - explain=true 이면 실행계획 (EXPLAIN, select만)
+ * 메트릭 : repository.slow-queries (method, condition = 조건 모양)
+ * 바인딩 값까지 봐야 하면 log-values=true로 켜고 이 클래스의 로그 레벨을 DEBUG로 둔다. (값이 채워진 SQL을 DEBUG로 따로 남긴다)
+ *
+ * EXPLAIN은 느린 SQL을 실행한 커넥션이 아니라 별도 스레드에서 풀의 다른 커넥션으로 실행한다.
+ * - 같은 커넥션에서 실행하면 fetchSize로 스트리밍 중인 결과를 드라이버가 먼저 모두 읽어 메모리에 올린다.
+ * - explain-interval에 한 번만 실행하고, 대기열이 차 있으면 건너뛴다. (느린 쿼리가 몰릴 때 커넥션을 더 잡지 않도록)
+ *   EXPLAIN을 하는 경우에는 로그를 EXPLAIN이 끝난 뒤 계획과 함께 남긴다.
+ * - SQL 템플릿을 PreparedStatement로 EXPLAIN하고 실행할 때의 바인딩 값을 그대로 바인딩한다. (값을 SQL 문자열로 이어 붙이지 않는다)
+ * - 트랜잭션 밖에서 본 계획이므로 아직 커밋되지 않은 변경은 반영되지 않는다.
+ */
+@Slf4j
+@Component
+public class SlowQueryLogger extends SimpleJdbcEventListener {
+
+    private static final ThreadLocal<Boolean> EXPLAINING = ThreadLocal.withInitial(() -> false);
+
+    private final MeterRegistry registry;
+    private final ObjectProvider<DataSource> dataSource; //이 리스너로 감싸지는 데이터소스이므로 나중에 꺼낸다
+    private final long thresholdNanos;
+    private final boolean explain;
+    private final boolean logValues;
+    private final long explainIntervalNanos;
+    private final AtomicLong nextExplain = new AtomicLong(System.nanoTime());
+    private final ThreadPoolTaskExecutor explainExecutor;
+
+    public SlowQueryLogger(MeterRegistry registry, ObjectProvider<DataSource> dataSource,
+                           @Value("${querydsl.slow-query.threshold:1s}") Duration threshold,
+                           @Value("${querydsl.slow-query.explain:false}") boolean explain,
+                           @Value("${querydsl.slow-query.explain-interval:1s}") Duration explainInterval,
+                           @Value("${querydsl.slow-query.log-values:false}") boolean logValues) {
+        this.registry = registry;
+        this.dataSource = dataSource;
+        this.thresholdNanos = threshold.toNanos();
+        this.explain = explain;
+        this.logValues = logValues;
+        this.explainIntervalNanos = explainInterval.toNanos();
+        this.explainExecutor = explain ? explainExecutor() : null;
+    }
+
+    private static ThreadPoolTaskExecutor explainExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setThreadNamePrefix("slow-query-explain-");
+        executor.setCorePoolSize(1);
+        executor.setMaxPoolSize(1);
+        executor.setQueueCapacity(10);
+        executor.initialize();
+        return executor;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (explainExecutor != null) {
+            explainExecutor.shutdown();
+        }
+    }
+
+    @Override
+    public void onAfterAnyExecute(StatementInformation statementInformation, long timeElapsedNanos, SQLException e) {
+        if (timeElapsedNanos < thresholdNanos || EXPLAINING.get()) {
+            return;
+        }
+        RepositoryInvocation invocation = RepositoryInvocation.current();
+        String method = invocation == null ? "n/a" : invocation.getMethod();
+        MemberSearchCondition condition = invocation == null ? null : invocation.getCondition();
+
+        String sql = statementInformation.getSql();
+        List<Object> parameters = parameters(statementInformation); //EXPLAIN은 나중에 실행되므로 지금 복사해 둔다
+        registry.counter("repository.slow-queries",
+                "method", method, "condition", condition == null ? "n/a" : condition.shape()).increment();
+        if (logValues && log.isDebugEnabled()) {
+            log.debug("slow query values method={} : {}", method, statementInformation.getSqlWithValues());
+        }
+
+        Consumer<String> logWithPlan = plan -> log.warn("slow query {}ms method={} condition={}{}\n  sql    : {}\n  values : {}{}",
+                TimeUnit.NANOSECONDS.toMillis(timeElapsedNanos), method, condition,
+                e == null ? "" : " error=" + e.getMessage(), sql, masked(parameters), plan);
+        if (explain && e == null && isSelect(sql) && explainAllowed()) {
+            try {
+                explainExecutor.execute(() -> logWithPlan.accept(explain(sql, parameters)));
+                return;
+            } catch (TaskRejectedException rejected) {
+                //대기열이 가득 찼다 -> 계획 없이 남긴다
+            }
+        }
+        logWithPlan.accept("");
+    }
+
+    private boolean explainAllowed() {
+        long now = System.nanoTime();
+        long next = nextExplain.get();
+        return now - next >= 0 && nextExplain.compareAndSet(next, now + explainIntervalNanos);
+    }
+
+    // 바인딩 순서(1, 2, ...)대로의 값, PreparedStatement가 아니면 빈 목록
+    private static List<Object> parameters(StatementInformation statementInformation) {
+        if (!(statementInformation instanceof PreparedStatementInformation prepared)) {
+            return List.of();
+        }
+        return new TreeMap<>(prepared.getParameterValues()).values().stream()
+                .map(Value::getValue)
+                .toList();
+    }
+
+    // 값 대신 타입만 남긴다 : [String, Integer, null]
+    private static List<String> masked(List<Object> parameters) {
+        return parameters.stream()
+                .map(value -> value == null ? "null" : value.getClass().getSimpleName())
+                .toList();
+    }
+
+    private static boolean isSelect(String sql) {
+        String trimmed = sql.stripLeading();
+        return trimmed.regionMatches(true, 0, "select", 0, 6) || trimmed.regionMatches(true, 0, "with", 0, 4);
+    }
+
+    // 실행계획의 행마다 "컬럼=값, ..." 한 줄
+    private String explain(String sql, List<Object> parameters) {
+        StringBuilder plan = new StringBuilder("\n  explain:");
+        EXPLAINING.set(true); //EXPLAIN 자체는 느린 쿼리로 남기지 않는다
+        try (Connection connection = dataSource.getObject().getConnection();
+             PreparedStatement statement = connection.prepareStatement("explain " + sql)) {
+            for (int i = 0; i < parameters.size(); i++) {
+                statement.setObject(i + 1, parameters.get(i));
+            }
+            appendPlan(plan, statement);
+        } catch (SQLException ex) {
+            log.debug("explain failed : {}", sql, ex);
+            plan.append(" failed (").append(ex.getMessage()).append(')');
+        } finally {
+            EXPLAINING.remove();
+        }
+        return plan.toString();
+    }
+
+    private static void appendPlan(StringBuilder plan, PreparedStatement statement) throws SQLException {
+        try (ResultSet rs = statement.executeQuery()) {
+            ResultSetMetaData meta = rs.getMetaData();
+            while (rs.next()) {
+                plan.append("\n    ");
+                for (int i = 1; i <= meta.getColumnCount(); i++) {
+                    if (i > 1) {
+                        plan.append(", ");
+                    }
+                    plan.append(meta.getColumnLabel(i)).append('=').append(rs.getObject(i));
+                }
+            }
+        }
+    }
+}
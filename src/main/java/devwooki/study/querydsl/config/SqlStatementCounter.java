@@ -0,0 +1,141 @@
+package devwooki.study.querydsl.config;
+
+import com.p6spy.engine.common.StatementInformation;
+import com.p6spy.engine.event.SimpleJdbcEventListener;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.sql.SQLException;
+import java.util.Map;
+
+/**
+ * N+1 감지기 (p6spy 리스너)
+ * 실행되는 모든 SQL을 현재 스코프(HTTP 요청, 트랜잭션, 테스트)에 템플릿별로 센다.
+ * 같은 템플릿이 maxRepeats번을 넘으면 mode에 따라 경고 로그(log)를 남기거나 예외(fail)를 던진다. (스코프마다 따로 센다)
+ * - HTTP 요청 : StatementBudgetFilter가 스코프를 연다
+ * - 트랜잭션 : 트랜잭션 안에서 처음 SQL이 실행되면 트랜잭션이 끝날 때까지 스코프를 연다. (요청 스코프 안이면 그 아래에 둔다)
+ *   트랜잭션 동기화 리소스로 묶어서 트랜잭션마다 따로 센다. (REQUIRES_NEW로 중단된 트랜잭션은 재개되면 이어서 센다)
+ * - 테스트 : open()으로 직접 열고 닫는다
+ * p6spy-spring-boot-starter가 JdbcEventListener 빈을 자동으로 등록한다.
+ */
+@Slf4j
+@Component
+public class SqlStatementCounter extends SimpleJdbcEventListener {
+
+    public enum Mode {LOG, FAIL}
+
+    private static final ThreadLocal<StatementScope> CURRENT = new ThreadLocal<>();
+
+    private final Object transactionScopeKey = new Object();
+
+    private final int maxRepeats;
+    private final Mode mode;
+
+    public SqlStatementCounter(@Value("${querydsl.statement-budget.max-repeats:10}") int maxRepeats,
+                               @Value("${querydsl.statement-budget.mode:log}") String mode) {
+        this.maxRepeats = maxRepeats;
+        this.mode = Mode.valueOf(mode.toUpperCase());
+    }
+
+    /**
+     * 스코프를 연다. 안쪽 스코프에서 실행된 SQL은 바깥 스코프에도 함께 집계된다.
+     * try-with-resources로 닫아야 한다.
+     */
+    public StatementScope open(String name) {
+        StatementScope scope = new StatementScope(name, CURRENT.get(), this::close);
+        CURRENT.set(scope);
+        return scope;
+    }
+
+    @Override
+    public void onAfterAnyExecute(StatementInformation statementInformation, long timeElapsedNanos, SQLException e) {
+        StatementScope transaction = transactionScope();
+        StatementScope current = CURRENT.get();
+        if (transaction == null && current == null) {
+            return;
+        }
+        String sql = statementInformation.getSql();
+        for (StatementScope s = transaction; s != null; s = s.getParent()) {
+            record(s, sql);
+        }
+        //트랜잭션이 시작된 뒤에 열린 스코프 (ex. 트랜잭션 안의 테스트 스코프)
+        for (StatementScope s = current; s != null && !contains(transaction, s); s = s.getParent()) {
+            record(s, sql);
+        }
+    }
+
+    private void record(StatementScope scope, String sql) {
+        if (scope.record(sql) == maxRepeats + 1) {
+            exceeded(scope, sql);
+        }
+    }
+
+    private static boolean contains(StatementScope chain, StatementScope scope) {
+        for (StatementScope s = chain; s != null; s = s.getParent()) {
+            if (s == scope) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    //현재 트랜잭션의 스코프, 처음이면 지금 열린 스코프(요청 등) 아래에 만든다
+    private StatementScope transactionScope() {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return null;
+        }
+        StatementScope bound = (StatementScope) TransactionSynchronizationManager.getResource(transactionScopeKey);
+        if (bound != null) {
+            return bound;
+        }
+        String name = "transaction " + TransactionSynchronizationManager.getCurrentTransactionName();
+        StatementScope scope = new StatementScope(name, CURRENT.get(), this::close);
+        TransactionSynchronizationManager.bindResource(transactionScopeKey, scope);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void suspend() {
+                TransactionSynchronizationManager.unbindResource(transactionScopeKey);
+            }
+
+            @Override
+            public void resume() {
+                TransactionSynchronizationManager.bindResource(transactionScopeKey, scope);
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                TransactionSynchronizationManager.unbindResourceIfPossible(transactionScopeKey);
+                scope.close();
+            }
+        });
+        return scope;
+    }
+
+    private void exceeded(StatementScope scope, String sql) {
+        String message = String.format("N+1 suspected: same statement executed more than %d times in [%s] : %s",
+                maxRepeats, scope.getName(), sql);
+        if (mode == Mode.FAIL) {
+            throw new StatementBudgetExceededException(message);
+        }
+        log.warn(message);
+    }
+
+    private void close(StatementScope scope) {
+        if (CURRENT.get() == scope) {
+            if (scope.getParent() == null) {
+                CURRENT.remove();
+            } else {
+                CURRENT.set(scope.getParent());
+            }
+        }
+        if (log.isDebugEnabled()) {
+            log.debug("[{}] executed {} statements", scope.getName(), scope.getTotal());
+            for (Map.Entry<String, Integer> entry : scope.getCounts().entrySet()) {
+                log.debug("  {}x {}", entry.getValue(), entry.getKey());
+            }
+        }
+    }
+}
@@ -0,0 +1,10 @@
+package devwooki.study.querydsl.config;
+
+/**
+ * 같은 SQL 템플릿이 한 요청/트랜잭션에서 허용 횟수보다 많이 실행됨 (N+1 의심)
+ */
+public class StatementBudgetExceededException extends RuntimeException {
+    public StatementBudgetExceededException(String message) {
+        super(message);
+    }
+}
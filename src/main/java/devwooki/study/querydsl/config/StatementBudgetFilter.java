@@ -0,0 +1,29 @@
+package devwooki.study.querydsl.config;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+
+/**
+ * HTTP 요청 하나를 SQL 집계 스코프 하나로 묶는다. (SqlStatementCounter 참고)
+ */
+@Component
+@RequiredArgsConstructor
+public class StatementBudgetFilter extends OncePerRequestFilter {
+
+    private final SqlStatementCounter counter;
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        try (StatementScope scope = counter.open(request.getMethod() + " " + request.getRequestURI())) {
+            filterChain.doFilter(request, response);
+        }
+    }
+}
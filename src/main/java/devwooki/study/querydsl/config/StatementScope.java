@@ -0,0 +1,53 @@
+package devwooki.study.querydsl.config;
+
+import lombok.Getter;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * 하나의 HTTP 요청 / 트랜잭션 / 테스트 구간에서 실행된 SQL 수
+ * SQL은 바인딩 값이 빠진 템플릿(? 포함) 기준으로 센다 -> 같은 템플릿이 여러번 = N+1 의심
+ * 스레드에 묶여서 사용되므로 동기화하지 않는다.
+ */
+public class StatementScope implements AutoCloseable {
+
+    @Getter
+    private final String name;
+    private final StatementScope parent;
+    private final Consumer<StatementScope> onClose;
+    private final Map<String, Integer> counts = new LinkedHashMap<>();
+    @Getter
+    private int total;
+
+    StatementScope(String name, StatementScope parent, Consumer<StatementScope> onClose) {
+        this.name = name;
+        this.parent = parent;
+        this.onClose = onClose;
+    }
+
+    StatementScope getParent() {
+        return parent;
+    }
+
+    // 템플릿별 실행 횟수를 반환
+    int record(String sql) {
+        total++;
+        return counts.merge(sql, 1, Integer::sum);
+    }
+
+    public Map<String, Integer> getCounts() {
+        return Collections.unmodifiableMap(counts);
+    }
+
+    public int count(String sql) {
+        return counts.getOrDefault(sql, 0);
+    }
+
+    @Override
+    public void close() {
+        onClose.accept(this);
+    }
+}
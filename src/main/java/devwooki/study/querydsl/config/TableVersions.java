@@ -0,0 +1,73 @@
+package devwooki.study.querydsl.config;
+
+import devwooki.study.querydsl.entity.EntityChangedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 엔티티(테이블)별 변경 버전
+ * EntityChangedEvent가 발생한 트랜잭션이 끝나면 해당 엔티티의 버전을 올린다.
+ * DB를 조회하지 않고 "마지막으로 본 이후 바뀌었는가"를 판단할 수 있어서 ETag를 만드는 데 사용한다.
+ * - 버전은 메모리에만 있으므로 재시작하면 초기화된다. -> 기동 시각(epoch)을 함께 넣어서 이전 ETag와 겹치지 않게 한다.
+ * - 인스턴스 하나 기준이다. 다른 인스턴스에서 일어난 변경은 알지 못한다.
+ * - 캐시(SearchResultCache 등)가 비워진 다음에 버전을 올린다. (새 ETag로 예전 캐시 값이 나가지 않도록)
+ */
+@Component
+public class TableVersions {
+
+    private final long epoch = System.currentTimeMillis();
+    private final Map<Class<?>, AtomicLong> versions = new ConcurrentHashMap<>();
+
+    public long version(Class<?> entityType) {
+        AtomicLong version = versions.get(entityType);
+        return version == null ? 0L : version.get();
+    }
+
+    /**
+     * 약한 ETag (W/"기동시각-엔티티버전들-요청키 해시")
+     * 버전은 조회하기 전에 읽어야 한다. (조회 도중 변경되면 다음 요청에서 ETag가 달라진다)
+     * 요청키는 hashCode(32비트)가 아니라 toString을 SHA-256으로 해시한다. (다른 요청이 같은 ETag를 받아 304가 나가지 않도록)
+     * @param entityTypes 응답이 의존하는 엔티티들
+     * @param key         같은 응답이 나오는 요청끼리 같은 값, toString이 값을 모두 나타내야 한다 (ex. 정규화된 검색조건, Pageable)
+     */
+    public String etag(List<Class<?>> entityTypes, List<?> key) {
+        StringBuilder etag = new StringBuilder("W/\"").append(Long.toHexString(epoch));
+        for (Class<?> entityType : entityTypes) {
+            etag.append('-').append(version(entityType));
+        }
+        return etag.append('-').append(digest(key)).append('"').toString();
+    }
+
+    //요소마다 타입과 길이를 앞에 붙여서 요소 경계가 섞이지 않게 한다. 128비트만 쓴다
+    static String digest(List<?> key) {
+        MessageDigest sha256;
+        try {
+            sha256 = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e); //모든 JVM이 지원해야 하는 알고리즘
+        }
+        for (Object element : key) {
+            String value = element == null ? "null" : element.getClass().getName() + ":" + element;
+            sha256.update((value.length() + ":" + value).getBytes(StandardCharsets.UTF_8));
+        }
+        return HexFormat.of().formatHex(Arrays.copyOf(sha256.digest(), 16));
+    }
+
+    @Order(Ordered.LOWEST_PRECEDENCE)
+    @EventListener
+    public void onEntityChanged(EntityChangedEvent event) {
+        versions.computeIfAbsent(event.getEntityType(), type -> new AtomicLong()).incrementAndGet();
+    }
+}
@@ -0,0 +1,98 @@
+package devwooki.study.querydsl.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordingStream;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * 가상 스레드 pinning 진단 (Java 21 + spring.threads.virtual.enabled=true 에서 의미가 있다)
+ * 가상 스레드가 synchronized 블록 안에서 I/O를 기다리면 캐리어 스레드까지 묶여버린다. (pinning)
+ * JDBC 드라이버나 커넥션 풀 내부에서 이런 일이 생기면 가상 스레드를 써도 동시 처리량이 캐리어 수(=CPU 수)로 제한된다.
+ * JFR의 jdk.VirtualThreadPinned 이벤트를 구독해서, 스택에 드라이버/풀 패키지가 있는 경우만 로그와 메트릭으로 남긴다.
+ * - jdbc.virtual-thread.pinned (component = 패키지, frame = pinning이 일어난 가장 안쪽 드라이버/풀 메서드)
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "querydsl.pinning-monitor.enabled", havingValue = "true")
+public class VirtualThreadPinningMonitor {
+
+    private static final String PINNED_EVENT = "jdk.VirtualThreadPinned";
+
+    private final MeterRegistry registry;
+    private final Duration threshold;
+    private final List<String> packages;
+    private RecordingStream stream;
+
+    public VirtualThreadPinningMonitor(MeterRegistry registry,
+                                       @Value("${querydsl.pinning-monitor.threshold:20ms}") Duration threshold,
+                                       @Value("${querydsl.pinning-monitor.packages:org.mariadb.jdbc,com.zaxxer.hikari}") List<String> packages) {
+        this.registry = registry;
+        this.threshold = threshold;
+        this.packages = packages;
+    }
+
+    @PostConstruct
+    public void start() {
+        if (Runtime.version().feature() < 21) {
+            log.warn("Virtual thread pinning monitor requires Java 21+, current={}", Runtime.version());
+            return;
+        }
+        stream = new RecordingStream();
+        stream.enable(PINNED_EVENT).withThreshold(threshold).withStackTrace();
+        stream.onEvent(PINNED_EVENT, this::onPinned);
+        stream.startAsync();
+        log.info("Virtual thread pinning monitor started, threshold={}, packages={}", threshold, packages);
+    }
+
+    private void onPinned(RecordedEvent event) {
+        if (event.getStackTrace() == null) {
+            return;
+        }
+        List<RecordedFrame> frames = event.getStackTrace().getFrames();
+        for (RecordedFrame frame : frames) {
+            String className = frame.getMethod().getType().getName();
+            String component = componentOf(className);
+            if (component == null) {
+                continue;
+            }
+            String location = className + "." + frame.getMethod().getName();
+            registry.counter("jdbc.virtual-thread.pinned", "component", component, "frame", location).increment();
+            log.warn("Virtual thread pinned for {}ms in {} (thread={})\n{}",
+                    event.getDuration().toMillis(), location, event.getThread() == null ? "?" : event.getThread().getJavaName(),
+                    frames.stream().map(this::format).collect(Collectors.joining("\n")));
+            return;
+        }
+    }
+
+    private String componentOf(String className) {
+        for (String pkg : packages) {
+            if (className.startsWith(pkg)) {
+                return pkg;
+            }
+        }
+        return null;
+    }
+
+    private String format(RecordedFrame frame) {
+        return "\tat " + frame.getMethod().getType().getName() + "." + frame.getMethod().getName()
+                + "(line " + frame.getLineNumber() + ")";
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (stream != null) {
+            stream.close();
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package devwooki.study.querydsl.config;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import java.util.List;
+
+@Configuration
+public class WebConfig implements WebMvcConfigurer {
+
+    //MemberTeamColumns 전용이므로 맨 앞에 두어도 다른 응답에는 영향이 없다
+    //jackson-dataformat-cbor가 있으면 스프링이 모든 응답에 CBOR 컨버터를 붙이므로 뺀다 (CBOR는 컬럼 응답에만)
+    @Override
+    public void extendMessageConverters(List<HttpMessageConverter<?>> converters) {
+        converters.removeIf(converter -> converter instanceof MappingJackson2CborHttpMessageConverter);
+        converters.add(0, new MemberTeamColumnsConverter());
+    }
+}
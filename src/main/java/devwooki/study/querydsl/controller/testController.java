@@ -1,27 +1,152 @@
 package devwooki.study.querydsl.controller;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import devwooki.study.querydsl.config.MemberTeamColumnsConverter;
+import devwooki.study.querydsl.config.SearchResultCache;
+import devwooki.study.querydsl.config.TableVersions;
 import devwooki.study.querydsl.dto.MemberSearchCondition;
+import devwooki.study.querydsl.dto.MemberTeamColumns;
+import devwooki.study.querydsl.dto.MemberTeamDTO;
+import devwooki.study.querydsl.entity.Member;
+import devwooki.study.querydsl.entity.Team;
 import devwooki.study.querydsl.repository.MemberRepository;
 import devwooki.study.querydsl.repository.MemberJpaRepository;
+import devwooki.study.querydsl.repository.MemberTestRepository;
+import jakarta.servlet.http.HttpServletResponse;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.List;
+import java.util.function.Supplier;
 
 @RestController
 @RequiredArgsConstructor
 public class testController {
     private final MemberJpaRepository memberJpaRepository;
     private final MemberRepository memberRepository;
+    private final MemberTestRepository memberTestRepository;
+    private final ObjectMapper objectMapper;
+    private final SearchResultCache searchResultCache;
+    private final TableVersions tableVersions;
+
+    private static final List<Class<?>> MEMBER_TEAM = List.of(Member.class, Team.class);
+
+    @Value("${querydsl.export.fetch-size:500}")
+    private int exportFetchSize;
 
     @GetMapping("/v1/members")
-    public ResponseEntity<?> searchMemberV1(MemberSearchCondition condition){
-        return ResponseEntity.ok(memberJpaRepository.searchWhere(condition));
+    public ResponseEntity<List<MemberTeamDTO>> searchMemberV1(MemberSearchCondition condition, WebRequest request){
+        //같은 조건의 결과는 캐시에서 꺼낸다 (Member/Team 변경시 무효화)
+        MemberSearchCondition normalized = condition.normalize();
+        Supplier<String> version = () -> tableVersions.etag(MEMBER_TEAM, List.of(normalized));
+        return conditional(request, version, () -> searchResultCache.versioned("searchWhere", List.of(normalized),
+                version, () -> memberJpaRepository.searchWhere(normalized)));
+    }
+
+    //Accept: application/vnd.member-columns+json 또는 application/cbor -> 컬럼 형태(문자열 사전)로 응답
+    @GetMapping(value = "/v1/members", produces = {MemberTeamColumnsConverter.COLUMNS_JSON_VALUE, MemberTeamColumnsConverter.CBOR_VALUE})
+    public ResponseEntity<MemberTeamColumns> searchMemberColumns(MemberSearchCondition condition, WebRequest request){
+        MemberSearchCondition normalized = condition.normalize();
+        Supplier<String> version = () -> tableVersions.etag(MEMBER_TEAM, List.of("columns", normalized));
+        return conditional(request, version, () -> searchResultCache.versioned("searchColumns", List.of(normalized),
+                version, () -> memberJpaRepository.searchColumns(normalized, exportFetchSize)));
     }
 
     @GetMapping("/v1/page/member")
-    public ResponseEntity<?> searchMemberV1(MemberSearchCondition condition, Pageable pageable){
-        return ResponseEntity.ok(memberRepository.searchPageComplex2(condition, pageable));
+    public ResponseEntity<Page<MemberTeamDTO>> searchMemberV1(MemberSearchCondition condition, Pageable pageable, WebRequest request){
+        MemberSearchCondition normalized = condition.normalize();
+        Supplier<String> version = () -> tableVersions.etag(MEMBER_TEAM, List.of(normalized, pageable));
+        return conditional(request, version, () -> searchResultCache.versioned("searchPageComplex2", List.of(normalized, pageable),
+                version, () -> memberRepository.searchPageComplex2(normalized, pageable)));
+    }
+
+    /**
+     * 1. If-None-Match가 지금 버전의 ETag와 같으면 캐시도 DB도 보지 않고 304로 응답한다.
+     * 2. 다르면 조회하고, ETag는 캐시된 값이 조회될 때의 버전으로 만든다. (지금 버전으로 만들면 변경 직후 예전 값에 새 ETag가 붙을 수 있다)
+     *    ResponseEntity에 ETag를 넣으면 스프링이 If-None-Match와 한 번 더 비교해서 같으면 304로 바꾼다.
+     * 같은 URL이 Accept에 따라 다른 형태로 응답하므로 Vary: Accept를 붙인다. (중간 캐시가 형태를 섞지 않도록)
+     */
+    private static <T> ResponseEntity<T> conditional(WebRequest request, Supplier<String> version,
+                                                     Supplier<SearchResultCache.Versioned<T>> loader) {
+        String current = version.get();
+        if (ifNoneMatch(request, current)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(current).varyBy(HttpHeaders.ACCEPT).build();
+        }
+        SearchResultCache.Versioned<T> result = loader.get();
+        return ResponseEntity.ok().eTag(result.version()).varyBy(HttpHeaders.ACCEPT).body(result.value());
+    }
+
+    //약한 비교 (W/ 는 무시한다), 여러 값(콤마, 헤더 여러 개)과 * 를 허용한다
+    private static boolean ifNoneMatch(WebRequest request, String etag) {
+        String[] headers = request.getHeaderValues(HttpHeaders.IF_NONE_MATCH);
+        if (headers == null) {
+            return false;
+        }
+        String opaque = etag.startsWith("W/") ? etag.substring(2) : etag;
+        for (String header : headers) {
+            for (String candidate : header.split(",")) {
+                candidate = candidate.trim();
+                if (candidate.startsWith("W/")) {
+                    candidate = candidate.substring(2);
+                }
+                if (candidate.equals("*") || candidate.equals(opaque)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    //content 쿼리와 count 쿼리를 동시에 실행한다
+    @GetMapping("/v2/page/member")
+    public ResponseEntity<?> searchMemberV2(MemberSearchCondition condition, Pageable pageable){
+        return ResponseEntity.ok(memberRepository.searchPageConcurrent(condition, pageable));
+    }
+
+    //offset 대신 커서로 다음 페이지를 요청한다. 응답의 nextCursor를 그대로 다시 넘기면 된다.
+    @GetMapping("/v1/cursor/member")
+    public ResponseEntity<?> searchMemberV1(MemberSearchCondition condition,
+                                            @RequestParam(required = false) String cursor,
+                                            @RequestParam(defaultValue = "20") int size){
+        return ResponseEntity.ok(memberTestRepository.searchAfter(condition, cursor, size));
+    }
+
+    //전체 결과를 List로 만들지 않고 한 줄에 하나씩 JSON(NDJSON)으로 바로 내려보낸다.
+    @GetMapping(value = "/v1/members/export", produces = "application/x-ndjson")
+    public void exportMembers(MemberSearchCondition condition, HttpServletResponse response) throws IOException {
+        response.setContentType("application/x-ndjson");
+        response.setCharacterEncoding("UTF-8");
+
+        ObjectWriter writer = objectMapper.writerFor(MemberTeamDTO.class)
+                .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE); // 행마다 flush하지 않고 버퍼가 찰 때 내보낸다
+        // 클라이언트가 끊으면 write가 IOException을 던지고(행 읽기도 멈춘다), 남은 버퍼를 내보내던 generator.close()도 실패한다.
+        // -> 출력 스트림은 generator와 따로 닫는다
+        try (OutputStream out = response.getOutputStream();
+             JsonGenerator generator = objectMapper.getFactory().createGenerator(out)) {
+            generator.setRootValueSeparator(null);
+            memberJpaRepository.streamWhere(condition, exportFetchSize, row -> {
+                try {
+                    writer.writeValue(generator, row);
+                    generator.writeRaw('\n');
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        }
     }
 }
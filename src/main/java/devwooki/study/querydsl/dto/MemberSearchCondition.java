@@ -1,15 +1,61 @@
 package devwooki.study.querydsl.dto;
 
 import lombok.Data;
+import org.springframework.util.StringUtils;
+
+import java.util.StringJoiner;
 
 @Data
 public class MemberSearchCondition {
     //회원명, 팀명, 나이(ageGoe, ageLoe)
 
     private String username;
+    private String usernamePrefix;   //username like 'x%' (대소문자 무시, 인덱스 사용 가능)
+    private String usernameContains; //username에 포함 (대소문자 무시, n-gram 색인) -> 규칙은 UsernamePredicates
     private String teamName;
     private Integer ageGoe; //null일 수 있으므로
     private Integer ageLoe; //null일 수 있으므로
 
+    /**
+     * 캐시 키 등으로 쓰기 위해 의미가 같은 조건을 같은 값으로 맞춘다.
+     * 검색 쿼리와 마찬가지로 null, "", " " 는 모두 조건 없음(null)으로 취급한다.
+     */
+    public MemberSearchCondition normalize() {
+        MemberSearchCondition normalized = new MemberSearchCondition();
+        normalized.setUsername(StringUtils.hasText(username) ? username : null);
+        normalized.setUsernamePrefix(StringUtils.hasText(usernamePrefix) ? usernamePrefix : null);
+        normalized.setUsernameContains(StringUtils.hasText(usernameContains) ? usernameContains : null);
+        normalized.setTeamName(StringUtils.hasText(teamName) ? teamName : null);
+        normalized.setAgeGoe(ageGoe);
+        normalized.setAgeLoe(ageLoe);
+        return normalized;
+    }
 
+    /**
+     * 값이 아니라 어떤 조건이 들어있는지만 나타낸다. (ex. "teamName,ageGoe", 조건이 없으면 "none")
+     * 메트릭 태그처럼 값의 종류가 많으면 안 되는 곳에서 사용한다.
+     */
+    public String shape() {
+        StringJoiner joiner = new StringJoiner(",");
+        joiner.setEmptyValue("none");
+        if (StringUtils.hasText(username)) {
+            joiner.add("username");
+        }
+        if (StringUtils.hasText(usernamePrefix)) {
+            joiner.add("usernamePrefix");
+        }
+        if (StringUtils.hasText(usernameContains)) {
+            joiner.add("usernameContains");
+        }
+        if (StringUtils.hasText(teamName)) {
+            joiner.add("teamName");
+        }
+        if (ageGoe != null) {
+            joiner.add("ageGoe");
+        }
+        if (ageLoe != null) {
+            joiner.add("ageLoe");
+        }
+        return joiner.toString();
+    }
 }
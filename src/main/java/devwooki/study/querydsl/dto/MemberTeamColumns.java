@@ -0,0 +1,223 @@
+package devwooki.study.querydsl.dto;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 대량 MemberTeamDTO 결과를 컬럼 단위로 담는 컨테이너
+ * MemberTeamDTO는 행마다 객체 1개 + Long 2개 + 팀 이름 문자열을 가지므로 백만 행이면 작은 객체가 수백 MB가 된다.
+ * 1. memberId, age, teamId는 기본형 배열에 담는다. (teamId가 없는 행은 teamNull 비트로 표시)
+ * 2. username, teamName은 사전(dictionary)에 한 번만 저장하고 행에는 int 코드만 둔다. (팀 이름은 팀 수만큼만 남는다)
+ * 3. cursor()는 하나의 커서 객체를 움직이며 읽으므로 행마다 객체를 만들지 않는다.
+ * 채우는 쪽은 한 스레드여야 한다. 다 채운 뒤에는 여러 스레드에서 읽어도 된다.
+ */
+public class MemberTeamColumns {
+
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private long[] memberIds;
+    private int[] usernames;
+    private int[] ages;
+    private long[] teamIds;
+    private int[] teamNames;
+    private final BitSet teamNull = new BitSet();
+    private final StringDictionary usernameDictionary = new StringDictionary();
+    private final StringDictionary teamNameDictionary = new StringDictionary();
+    private int size;
+
+    public MemberTeamColumns() {
+        this(INITIAL_CAPACITY);
+    }
+
+    public MemberTeamColumns(int expectedSize) {
+        int capacity = Math.max(expectedSize, 16);
+        memberIds = new long[capacity];
+        usernames = new int[capacity];
+        ages = new int[capacity];
+        teamIds = new long[capacity];
+        teamNames = new int[capacity];
+    }
+
+    public void add(long memberId, String username, int age, Long teamId, String teamName) {
+        ensureCapacity(size + 1);
+        memberIds[size] = memberId;
+        usernames[size] = usernameDictionary.encode(username);
+        ages[size] = age;
+        if (teamId == null) {
+            teamNull.set(size);
+        } else {
+            teamIds[size] = teamId;
+        }
+        teamNames[size] = teamNameDictionary.encode(teamName);
+        size++;
+    }
+
+    public void add(MemberTeamDTO row) {
+        add(row.getMemberId(), row.getUsername(), row.getAge(), row.getTeamId(), row.getTeamName());
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public long memberId(int row) {
+        return memberIds[checkRow(row)];
+    }
+
+    public String username(int row) {
+        return usernameDictionary.decode(usernames[checkRow(row)]);
+    }
+
+    public int age(int row) {
+        return ages[checkRow(row)];
+    }
+
+    public boolean hasTeam(int row) {
+        return !teamNull.get(checkRow(row));
+    }
+
+    //팀이 없는 행이면 0, hasTeam으로 먼저 확인한다
+    public long teamId(int row) {
+        return teamIds[checkRow(row)];
+    }
+
+    public String teamName(int row) {
+        return teamNameDictionary.decode(teamNames[checkRow(row)]);
+    }
+
+    //기존 API와 호환이 필요할 때만 사용 (행마다 객체 생성)
+    public MemberTeamDTO toDTO(int row) {
+        return new MemberTeamDTO(memberId(row), username(row), age(row),
+                hasTeam(row) ? teamId(row) : null, teamName(row));
+    }
+
+    public List<MemberTeamDTO> toDTOs() {
+        List<MemberTeamDTO> rows = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            rows.add(toDTO(i));
+        }
+        return rows;
+    }
+
+    //사전에 들어있는 값 (코드 순서), 직렬화할 때 사전을 한 번만 내보낼 때 사용
+    public List<String> usernameDictionary() {
+        return usernameDictionary.values();
+    }
+
+    public List<String> teamNameDictionary() {
+        return teamNameDictionary.values();
+    }
+
+    public int usernameCode(int row) {
+        return usernames[checkRow(row)];
+    }
+
+    public int teamNameCode(int row) {
+        return teamNames[checkRow(row)];
+    }
+
+    public Cursor cursor() {
+        return new Cursor();
+    }
+
+    private int checkRow(int row) {
+        if (row < 0 || row >= size) {
+            throw new IndexOutOfBoundsException("row " + row + ", size " + size);
+        }
+        return row;
+    }
+
+    private void ensureCapacity(int required) {
+        if (required <= memberIds.length) {
+            return;
+        }
+        int capacity = Math.max(required, memberIds.length + (memberIds.length >> 1));
+        memberIds = Arrays.copyOf(memberIds, capacity);
+        usernames = Arrays.copyOf(usernames, capacity);
+        ages = Arrays.copyOf(ages, capacity);
+        teamIds = Arrays.copyOf(teamIds, capacity);
+        teamNames = Arrays.copyOf(teamNames, capacity);
+    }
+
+    /**
+     * 행을 하나씩 이동하며 읽는 뷰 (flyweight)
+     * while (cursor.next()) { cursor.memberId() ... }
+     */
+    public final class Cursor {
+        private int row = -1;
+
+        private Cursor() {
+        }
+
+        public boolean next() {
+            if (row + 1 >= size) {
+                return false;
+            }
+            row++;
+            return true;
+        }
+
+        public int row() {
+            return row;
+        }
+
+        public long memberId() {
+            return MemberTeamColumns.this.memberId(row);
+        }
+
+        public String username() {
+            return MemberTeamColumns.this.username(row);
+        }
+
+        public int age() {
+            return MemberTeamColumns.this.age(row);
+        }
+
+        public boolean hasTeam() {
+            return MemberTeamColumns.this.hasTeam(row);
+        }
+
+        public long teamId() {
+            return MemberTeamColumns.this.teamId(row);
+        }
+
+        public String teamName() {
+            return MemberTeamColumns.this.teamName(row);
+        }
+    }
+
+    /**
+     * 문자열 <-> int 코드 사전, null은 항상 코드 -1
+     */
+    private static final class StringDictionary {
+        private static final int NULL_CODE = -1;
+
+        private final Map<String, Integer> codes = new HashMap<>();
+        private final List<String> values = new ArrayList<>();
+
+        int encode(String value) {
+            if (value == null) {
+                return NULL_CODE;
+            }
+            Integer code = codes.get(value);
+            if (code == null) {
+                code = values.size();
+                codes.put(value, code);
+                values.add(value);
+            }
+            return code;
+        }
+
+        String decode(int code) {
+            return code == NULL_CODE ? null : values.get(code);
+        }
+
+        List<String> values() {
+            return List.copyOf(values);
+        }
+    }
+}
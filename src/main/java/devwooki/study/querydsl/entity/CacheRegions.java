@@ -0,0 +1,18 @@
+package devwooki.study.querydsl.entity;
+
+/**
+ * 2차 캐시(JCache) region 이름
+ * region별 크기와 TTL은 querydsl.second-level-cache.regions.<region> 으로 설정한다. (SecondLevelCacheConfig 참고)
+ */
+public final class CacheRegions {
+
+    public static final String TEAM = "team";
+    public static final String TEAM_QUERY = "team-query";
+
+    //하이버네이트 기본 쿼리 캐시 region
+    public static final String DEFAULT_QUERY_RESULTS = "default-query-results-region";
+    public static final String UPDATE_TIMESTAMPS = "default-update-timestamps-region";
+
+    private CacheRegions() {
+    }
+}
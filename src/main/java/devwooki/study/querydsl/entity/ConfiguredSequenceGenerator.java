@@ -0,0 +1,31 @@
+package devwooki.study.querydsl.entity;
+
+import org.hibernate.MappingException;
+import org.hibernate.engine.config.spi.ConfigurationService;
+import org.hibernate.id.enhanced.SequenceStyleGenerator;
+import org.hibernate.service.ServiceRegistry;
+import org.hibernate.type.Type;
+
+import java.util.Properties;
+
+/**
+ * id 블록 크기(increment_size)를 매핑이 아니라 설정에서 읽는 시퀀스 생성기
+ * allocationSize는 어노테이션 값이라 컴파일할 때 정해지므로, 엔티티마다 설정 키를 지정하고 기동할 때 그 값으로 바꾼다.
+ * 설정 값은 HibernateBatchConfig가 하이버네이트 설정으로 넘긴다. (IdAllocation 참고)
+ */
+public class ConfiguredSequenceGenerator extends SequenceStyleGenerator {
+
+    //블록 크기를 읽어올 하이버네이트 설정 키 (@Parameter로 지정)
+    public static final String ALLOCATION_SIZE_SETTING = "allocation_size_setting";
+
+    @Override
+    public void configure(Type type, Properties parameters, ServiceRegistry serviceRegistry) throws MappingException {
+        String setting = parameters.getProperty(ALLOCATION_SIZE_SETTING);
+        Object allocationSize = serviceRegistry.getService(ConfigurationService.class).getSettings().get(setting);
+        if (allocationSize == null) {
+            throw new MappingException("id 블록 크기 설정이 없습니다 : " + setting);
+        }
+        parameters.setProperty(INCREMENT_PARAM, allocationSize.toString());
+        super.configure(type, parameters, serviceRegistry);
+    }
+}
@@ -0,0 +1,67 @@
+package devwooki.study.querydsl.entity;
+
+import devwooki.study.querydsl.entity.EntityChangedEvent.ChangeType;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 트랜잭션 안의 엔티티 변경을 (엔티티 타입 -> 변경 종류)로 모았다가 트랜잭션이 끝나면 타입마다 EntityChangedEvent를 한 번 발행한다.
+ * - 트랜잭션마다 TransactionSynchronization은 하나만 등록하고, 엔티티 자체는 보관하지 않는다.
+ *   -> 대량 적재(N건)에서도 메모리 사용량이 일정하고, 캐시도 커밋마다 한 번만 비워진다.
+ * - 커밋이든 롤백이든 트랜잭션이 끝나면 발행한다. (롤백 전에 flush된 변경을 본 캐시가 있을 수 있다)
+ * - 트랜잭션 밖에서 일어난 변경은 바로 발행한다.
+ * - REQUIRES_NEW로 트랜잭션이 중단되면 모은 변경도 함께 중단되고, 안쪽 트랜잭션은 따로 모아서 먼저 발행한다.
+ */
+@Component
+public class EntityChangeCollector {
+
+    private final ApplicationEventPublisher publisher;
+
+    public EntityChangeCollector(ApplicationEventPublisher publisher) {
+        this.publisher = publisher;
+    }
+
+    public void changed(Class<?> entityType, ChangeType changeType) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            publisher.publishEvent(new EntityChangedEvent(entityType, EnumSet.of(changeType)));
+            return;
+        }
+        Changes changes = (Changes) TransactionSynchronizationManager.getResource(this);
+        if (changes == null) {
+            changes = new Changes();
+            TransactionSynchronizationManager.bindResource(this, changes);
+            TransactionSynchronizationManager.registerSynchronization(changes);
+        }
+        changes.add(entityType, changeType);
+    }
+
+    private final class Changes implements TransactionSynchronization {
+        private final Map<Class<?>, EnumSet<ChangeType>> byType = new LinkedHashMap<>();
+
+        void add(Class<?> entityType, ChangeType changeType) {
+            byType.computeIfAbsent(entityType, type -> EnumSet.noneOf(ChangeType.class)).add(changeType);
+        }
+
+        @Override
+        public void suspend() {
+            TransactionSynchronizationManager.unbindResource(EntityChangeCollector.this);
+        }
+
+        @Override
+        public void resume() {
+            TransactionSynchronizationManager.bindResource(EntityChangeCollector.this, this);
+        }
+
+        @Override
+        public void afterCompletion(int status) {
+            TransactionSynchronizationManager.unbindResourceIfPossible(EntityChangeCollector.this);
+            byType.forEach((entityType, changeTypes) -> publisher.publishEvent(new EntityChangedEvent(entityType, changeTypes)));
+        }
+    }
+}
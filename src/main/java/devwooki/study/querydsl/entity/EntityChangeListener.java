@@ -0,0 +1,37 @@
+package devwooki.study.querydsl.entity;
+
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+
+import static devwooki.study.querydsl.entity.EntityChangedEvent.ChangeType.*;
+
+/**
+ * JPA 엔티티 리스너 -> 스프링 이벤트로 변환
+ * em.persist, 변경 감지, 스프링 데이터 JPA의 save/delete 모두 여기를 지나간다.
+ * 건마다 이벤트를 발행하지 않고 EntityChangeCollector에 타입과 변경 종류만 모은다. (트랜잭션이 끝나면 타입별로 한 번 발행)
+ * 스프링 부트는 하이버네이트가 리스너를 스프링 빈으로 생성하도록 설정하므로 생성자 주입이 가능하다.
+ */
+public class EntityChangeListener {
+
+    private final EntityChangeCollector collector;
+
+    public EntityChangeListener(EntityChangeCollector collector) {
+        this.collector = collector;
+    }
+
+    @PostPersist
+    public void postPersist(Object entity) {
+        collector.changed(entity.getClass(), PERSIST);
+    }
+
+    @PostUpdate
+    public void postUpdate(Object entity) {
+        collector.changed(entity.getClass(), UPDATE);
+    }
+
+    @PostRemove
+    public void postRemove(Object entity) {
+        collector.changed(entity.getClass(), REMOVE);
+    }
+}
@@ -0,0 +1,40 @@
+package devwooki.study.querydsl.entity;
+
+import lombok.Getter;
+import lombok.ToString;
+
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * 엔티티가 변경되었음을 알리는 스프링 이벤트
+ * 트랜잭션이 끝난 뒤 변경된 엔티티 타입마다 한 번 발행된다. (EntityChangeCollector)
+ * 캐시처럼 DB 내용에 의존하는 구성요소가 @EventListener로 받아서 무효화한다.
+ * 어떤 행이 바뀌었는지는 담지 않는다. (대량 적재에서 엔티티를 붙잡고 있지 않도록)
+ */
+@Getter
+@ToString
+public class EntityChangedEvent {
+
+    public enum ChangeType {
+        PERSIST, UPDATE, REMOVE,
+        BULK // update/delete 쿼리로 여러 행을 한번에 바꾼 경우
+    }
+
+    private final Class<?> entityType;
+    private final Set<ChangeType> changeTypes; //트랜잭션 안에서 일어난 변경 종류
+
+    public EntityChangedEvent(Class<?> entityType, Set<ChangeType> changeTypes) {
+        this.entityType = entityType;
+        this.changeTypes = Collections.unmodifiableSet(EnumSet.copyOf(changeTypes));
+    }
+
+    public static EntityChangedEvent bulk(Class<?> entityType) {
+        return new EntityChangedEvent(entityType, EnumSet.of(ChangeType.BULK));
+    }
+
+    public boolean contains(ChangeType changeType) {
+        return changeTypes.contains(changeType);
+    }
+}
@@ -0,0 +1,30 @@
+package devwooki.study.querydsl.entity;
+
+/**
+ * Member, Team id 할당 설정
+ * 시퀀스를 한 번 호출할 때마다 블록 크기만큼 id를 받아서 메모리에서 나눠준다. (pooled-lo 옵티마이저)
+ * -> insert마다 시퀀스 테이블을 왕복하지 않고, IDENTITY와 달리 JDBC batch insert도 유지된다.
+ * 블록 크기는 엔티티마다 설정으로 정한다. (ConfiguredSequenceGenerator)
+ * - querydsl.id.member-allocation-size (기본 500) : 대량 적재(MemberBulkLoader)의 batch-size와 맞춘다
+ * - querydsl.id.team-allocation-size (기본 50) : 거의 insert되지 않으므로 재기동마다 버려지는 id만 늘지 않게 기본값 그대로
+ * 주의 : 시퀀스의 increment 값이 블록 크기와 같아야 한다. (ddl-auto가 아니라면 직접 alter sequence)
+ *
+ * 기존 DB 업그레이드 (하이버네이트 기본값 increment 50으로 만들어진 시퀀스)
+ * increment가 다르면 하이버네이트가 기동할 때 시퀀스 검사에서 실패한다. (increment size mismatch)
+ * 1. 이전 버전(allocationSize 50) 인스턴스를 모두 내린다. -> 섞여서 돌면 두 방식의 id 블록이 겹친다
+ * 2. alter sequence member_seq increment by 500; (블록 크기를 바꿀 때도 같은 순서로 설정 값에 맞춘다)
+ * 3. 새 버전을 올린다. 다음 블록은 지금까지 받아간 값 이후부터 시작하므로 기존 id와 겹치지 않는다.
+ * 전략/크기별 insert 처리량 비교는 IdGeneratorBenchmark (JMH)
+ */
+public final class IdAllocation {
+
+    //블록 크기 설정 키 (HibernateBatchConfig가 하이버네이트 설정으로 넘긴다)
+    public static final String MEMBER_ALLOCATION_SIZE = "querydsl.id.member-allocation-size";
+    public static final String TEAM_ALLOCATION_SIZE = "querydsl.id.team-allocation-size";
+
+    public static final String MEMBER_SEQUENCE = "member_seq";
+    public static final String TEAM_SEQUENCE = "team_seq";
+
+    private IdAllocation() {
+    }
+}
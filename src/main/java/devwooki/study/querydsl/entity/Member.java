@@ -2,13 +2,27 @@ package devwooki.study.querydsl.entity;
 
 import jakarta.persistence.*;
 import lombok.*;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
+import org.hibernate.id.enhanced.SequenceStyleGenerator;
 @Entity
 @Getter @Setter
 @NoArgsConstructor(access = AccessLevel.PROTECTED)
 @ToString(of = {"id", "username", "age"})
+@EntityListeners(EntityChangeListener.class) //변경시 EntityChangedEvent 발행
+//검색 조건(username, age, team)마다 인덱스를 건다. 실행계획은 MemberQueryPlanTest(MariaDB)로 확인한다.
+@Table(indexes = {
+        @Index(name = "idx_member_username", columnList = "username"),
+        @Index(name = "idx_member_age", columnList = "age"),
+        @Index(name = "idx_member_team_id", columnList = "team_id")
+})
 public class Member {
     @Id
-    @GeneratedValue
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "member_seq_generator")
+    @GenericGenerator(name = "member_seq_generator", type = ConfiguredSequenceGenerator.class, parameters = {
+            @Parameter(name = SequenceStyleGenerator.SEQUENCE_PARAM, value = IdAllocation.MEMBER_SEQUENCE),
+            @Parameter(name = ConfiguredSequenceGenerator.ALLOCATION_SIZE_SETTING, value = IdAllocation.MEMBER_ALLOCATION_SIZE)
+    }) //id를 블록 단위로 받아온다, 블록 크기는 설정 (IdAllocation 참고)
     @Column(name = "member_id")
     private Long id;
 
@@ -2,6 +2,11 @@ package devwooki.study.querydsl.entity;
 
 import jakarta.persistence.*;
 import lombok.*;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
+import org.hibernate.id.enhanced.SequenceStyleGenerator;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -9,9 +14,16 @@ import java.util.List;
 @Getter @Setter
 @NoArgsConstructor(access = AccessLevel.PROTECTED) //JPA 스펙에서 접근제한자 protected가지
 @ToString(of = {"id", "name"}) //member도 추가되면 순환참조가 발생한다, @JsonIgnore를 통해 해결가능
+@EntityListeners(EntityChangeListener.class) //변경시 EntityChangedEvent 발행
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = CacheRegions.TEAM) //거의 변경되지 않고 회원 조회마다 같이 읽힌다
 public class Team {
     @Id
-    @GeneratedValue
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "team_seq_generator")
+    @GenericGenerator(name = "team_seq_generator", type = ConfiguredSequenceGenerator.class, parameters = {
+            @Parameter(name = SequenceStyleGenerator.SEQUENCE_PARAM, value = IdAllocation.TEAM_SEQUENCE),
+            @Parameter(name = ConfiguredSequenceGenerator.ALLOCATION_SIZE_SETTING, value = IdAllocation.TEAM_ALLOCATION_SIZE)
+    }) //id를 블록 단위로 받아온다, 블록 크기는 설정 (IdAllocation 참고)
     @Column(name = "team_id")
     private Long id;
 
@@ -0,0 +1,52 @@
+package devwooki.study.querydsl.entity;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.ToString;
+
+import java.util.Objects;
+
+/**
+ * 팀별 회원 통계 (읽기 모델)
+ * 회원이 추가/삭제되거나 나이, 팀이 바뀔 때마다 같은 트랜잭션에서 증분으로 갱신된다. (TeamStatisticsListener)
+ * -> group by 로 회원 전체를 매번 집계하지 않고 팀 id로 한 행만 읽는다.
+ */
+@Entity
+@Getter
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+@ToString
+public class TeamStatistics {
+    @Id
+    @Column(name = "team_id")
+    private Long teamId;
+
+    private long memberCount;
+    private long ageSum;
+    private Integer minAge; //회원이 없으면 null
+    private Integer maxAge;
+
+    public TeamStatistics(Long teamId, long memberCount, long ageSum, Integer minAge, Integer maxAge) {
+        this.teamId = teamId;
+        reset(memberCount, ageSum, minAge, maxAge);
+    }
+
+    public void reset(long memberCount, long ageSum, Integer minAge, Integer maxAge) {
+        this.memberCount = memberCount;
+        this.ageSum = ageSum;
+        this.minAge = minAge;
+        this.maxAge = maxAge;
+    }
+
+    public Double getAverageAge() {
+        return memberCount == 0 ? null : (double) ageSum / memberCount;
+    }
+
+    public boolean matches(long memberCount, long ageSum, Integer minAge, Integer maxAge) {
+        return this.memberCount == memberCount && this.ageSum == ageSum
+                && Objects.equals(this.minAge, minAge) && Objects.equals(this.maxAge, maxAge);
+    }
+}
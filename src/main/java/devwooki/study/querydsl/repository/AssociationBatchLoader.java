@@ -0,0 +1,93 @@
+package devwooki.study.querydsl.repository;
+
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import devwooki.study.querydsl.entity.Member;
+import devwooki.study.querydsl.entity.Team;
+import jakarta.persistence.EntityManager;
+import org.hibernate.Hibernate;
+import org.hibernate.proxy.HibernateProxy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import static devwooki.study.querydsl.entity.QMember.member;
+import static devwooki.study.querydsl.entity.QTeam.team;
+
+/**
+ * 지연로딩 연관관계 일괄 로딩 (DataLoader 방식)
+ * 조회 결과 목록에서 아직 초기화되지 않은 연관관계의 id를 모아서 batchSize개씩 in 쿼리로 한 번에 가져온다.
+ * -> 프록시마다 select가 나가는 N+1 을 1 + ceil(N / batchSize) 번으로 줄인다.
+ * 조회한 엔티티가 영속성 컨텍스트에 올라가면 같은 id의 프록시는 추가 쿼리 없이 초기화된다.
+ */
+@Component
+public class AssociationBatchLoader {
+
+    private final EntityManager em;
+    private final JPAQueryFactory queryFactory;
+    private final int batchSize;
+
+    public AssociationBatchLoader(EntityManager em, @Value("${querydsl.batch-loader.size:100}") int batchSize) {
+        this.em = em;
+        this.queryFactory = new JPAQueryFactory(em);
+        this.batchSize = batchSize;
+    }
+
+    // Member.team
+    public <T extends Collection<Member>> T loadTeams(T members) {
+        List<Object> proxies = new ArrayList<>();
+        Set<Long> ids = new LinkedHashSet<>();
+        for (Member m : members) {
+            Team t = m.getTeam();
+            if (t instanceof HibernateProxy proxy && !Hibernate.isInitialized(t)) {
+                proxies.add(proxy);
+                ids.add((Long) proxy.getHibernateLazyInitializer().getIdentifier());
+            }
+        }
+        for (List<Long> chunk : chunks(ids)) {
+            queryFactory.selectFrom(team)
+                    .where(team.id.in(chunk))
+                    .fetch();
+        }
+        proxies.forEach(Hibernate::initialize); // 이미 영속성 컨텍스트에 있으므로 쿼리 없이 초기화
+        return members;
+    }
+
+    // Team.members
+    public <T extends Collection<Team>> T loadMembers(T teams) {
+        Set<Long> ids = new LinkedHashSet<>();
+        for (Team t : teams) {
+            if (!Hibernate.isInitialized(t) || !Hibernate.isInitialized(t.getMembers())) {
+                ids.add((Long) em.getEntityManagerFactory().getPersistenceUnitUtil().getIdentifier(t));
+            }
+        }
+        for (List<Long> chunk : chunks(ids)) {
+            //fetch join으로 조회하면 영속성 컨텍스트에 있는 팀의 members 컬렉션이 초기화된다
+            queryFactory.selectFrom(team).distinct()
+                    .leftJoin(team.members, member).fetchJoin()
+                    .where(team.id.in(chunk))
+                    .fetch();
+        }
+        return teams;
+    }
+
+    private List<List<Long>> chunks(Set<Long> ids) {
+        List<List<Long>> chunks = new ArrayList<>();
+        List<Long> current = new ArrayList<>(batchSize);
+        for (Long id : ids) {
+            current.add(id);
+            if (current.size() == batchSize) {
+                chunks.add(current);
+                current = new ArrayList<>(batchSize);
+            }
+        }
+        if (!current.isEmpty()) {
+            chunks.add(current);
+        }
+        return chunks;
+    }
+}
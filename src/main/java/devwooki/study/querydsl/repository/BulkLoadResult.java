@@ -0,0 +1,23 @@
+package devwooki.study.querydsl.repository;
+
+import lombok.Getter;
+import lombok.ToString;
+
+import java.time.Duration;
+
+@Getter
+@ToString
+public class BulkLoadResult {
+    private final long rows;
+    private final Duration elapsed;
+
+    public BulkLoadResult(long rows, Duration elapsed) {
+        this.rows = rows;
+        this.elapsed = elapsed;
+    }
+
+    public double getRowsPerSecond() {
+        long nanos = Math.max(elapsed.toNanos(), 1);
+        return rows * 1_000_000_000d / nanos;
+    }
+}
@@ -0,0 +1,65 @@
+package devwooki.study.querydsl.repository;
+
+import devwooki.study.querydsl.entity.Member;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * 대량 회원 적재
+ * persist마다 flush/clear 하지 않고 batchSize개씩 모아서 flush(JDBC batch insert) -> clear 한다.
+ * clear를 해줘야 영속성 컨텍스트(1차 캐시)가 계속 커지지 않는다.
+ * 주의 : Member 생성자에서 changeTeam을 하면 Team.members 컬렉션에는 계속 쌓이므로 팀 객체는 짧게 사용하자
+ * 주의 : 바깥 트랜잭션에 참여하므로 clear는 적재한 회원뿐 아니라 호출한 쪽이 영속성 컨텍스트에 올려둔 엔티티도 모두 준영속으로 만든다.
+ *       -> 적재 전의 변경은 flush되어 저장되지만, 적재 후에 그 엔티티를 바꿔도 변경감지가 되지 않는다. (다시 조회하거나 merge)
+ *       별도 트랜잭션(REQUIRES_NEW)으로 분리하지 않는 이유 : 같은 트랜잭션에서 방금 저장한 팀을 참조하는 회원을
+ *       적재할 수 있어야 한다. (다른 트랜잭션에서는 커밋되지 않은 팀 행의 외래키 확인이 바깥 트랜잭션을 기다린다)
+ */
+@Slf4j
+@Repository
+public class MemberBulkLoader {
+
+    @PersistenceContext
+    private EntityManager em;
+
+    private final int batchSize;
+
+    public MemberBulkLoader(@Value("${querydsl.bulk.batch-size:500}") int batchSize) {
+        this.batchSize = batchSize;
+    }
+
+    @Transactional
+    public BulkLoadResult load(Iterable<Member> members) {
+        return load(StreamSupport.stream(members.spliterator(), false));
+    }
+
+    @Transactional
+    public BulkLoadResult load(Stream<Member> members) {
+        long start = System.nanoTime();
+        long rows = 0;
+
+        Iterator<Member> iterator = members.iterator();
+        while (iterator.hasNext()) {
+            em.persist(iterator.next());
+            if (++rows % batchSize == 0) {
+                em.flush();
+                em.clear();
+            }
+        }
+        em.flush();
+        em.clear();
+
+        BulkLoadResult result = new BulkLoadResult(rows, Duration.ofNanos(System.nanoTime() - start));
+        log.info("bulk load members rows={} elapsed={}ms rows/s={}",
+                rows, result.getElapsed().toMillis(), String.format("%.1f", result.getRowsPerSecond()));
+        return result;
+    }
+}
@@ -0,0 +1,154 @@
+package devwooki.study.querydsl.repository;
+
+import com.querydsl.core.types.dsl.BooleanExpression;
+import devwooki.study.querydsl.config.Querydsl4RepositorySupport;
+import devwooki.study.querydsl.dto.MemberSearchCondition;
+import devwooki.study.querydsl.entity.EntityChangeCollector;
+import devwooki.study.querydsl.entity.EntityChangedEvent;
+import devwooki.study.querydsl.entity.Member;
+import devwooki.study.querydsl.entity.Team;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.StringUtils;
+
+import java.util.List;
+import java.util.function.Function;
+
+import static devwooki.study.querydsl.entity.QMember.member;
+import static devwooki.study.querydsl.entity.QTeam.team;
+
+/**
+ * 벌크 연산 (update/delete 쿼리)
+ * 엔티티를 하나씩 조회해서 변경감지로 바꾸면 행마다 update가 나가므로, 조건에 맞는 행을 쿼리 한 번으로 바꾼다.
+ * 1. 검색조건에 맞는 id를 chunkSize개씩 끊어서 조회하고, 그 id들만 update/delete 한다. (chunk마다 트랜잭션 -> 락을 짧게 잡는다)
+ *    단, 이미 트랜잭션 안에서 호출하면 모든 chunk가 그 트랜잭션에 참여한다.
+ * 2. 벌크 연산은 영속성 컨텍스트를 무시하고 DB에 직접 실행된다.
+ *    -> 실행 전에 flush, 실행 후에 clear 해서 영속성 컨텍스트에 예전 값이 남지 않게 한다.
+ * 3. usernameContains는 n-gram 색인을 거치지 않고 DB에서 직접 고른다. (UsernamePredicates.containsWithoutIndex)
+ *    색인은 다른 인스턴스의 커밋을 늦게 반영하므로, 색인으로 고르면 조건에 맞는 행을 바꾸지 않고 건너뛸 수 있다.
+ */
+@Repository
+public class MemberBulkRepository extends Querydsl4RepositorySupport {
+
+    private final TransactionTemplate transactionTemplate;
+    private final EntityChangeCollector changeCollector;
+    private final UsernamePredicates usernames;
+    private final int chunkSize;
+
+    public MemberBulkRepository(PlatformTransactionManager transactionManager,
+                                EntityChangeCollector changeCollector,
+                                UsernamePredicates usernames,
+                                @Value("${querydsl.bulk.chunk-size:1000}") int chunkSize) {
+        super(Member.class);
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.changeCollector = changeCollector;
+        this.usernames = usernames;
+        this.chunkSize = chunkSize;
+    }
+
+    //ex) 나이 + 1 where age >= ?
+    public long addAge(MemberSearchCondition condition, int delta) {
+        return inChunks(condition, ids -> getQueryFactory()
+                .update(member)
+                .set(member.age, member.age.add(delta))
+                .where(member.id.in(ids))
+                .execute());
+    }
+
+    //ex) A팀 회원을 모두 B팀으로 (condition.teamName = A팀, teamId = B팀 id)
+    public long changeTeam(MemberSearchCondition condition, Long teamId) {
+        Team target = getEntityManager().getReference(Team.class, teamId);
+        return inChunks(condition, ids -> getQueryFactory()
+                .update(member)
+                .set(member.team, target)
+                .where(member.id.in(ids))
+                .execute());
+    }
+
+    public long delete(MemberSearchCondition condition) {
+        return inChunks(condition, ids -> getQueryFactory()
+                .delete(member)
+                .where(member.id.in(ids))
+                .execute());
+    }
+
+    private long inChunks(MemberSearchCondition condition, Function<List<Long>, Long> action) {
+        long affected = 0;
+        Long lastId = null;
+        try {
+            while (true) {
+                Long after = lastId;
+                Chunk chunk = transactionTemplate.execute(status -> executeChunk(condition, after, action));
+                affected += chunk.affected;
+                if (chunk.ids.size() < chunkSize) {
+                    return affected;
+                }
+                lastId = chunk.ids.get(chunk.ids.size() - 1);
+            }
+        } finally {
+            // 벌크 연산은 엔티티 리스너를 거치지 않으므로 직접 변경을 알린다 (캐시 무효화, 바깥 트랜잭션이 있으면 끝난 뒤)
+            // 중간 chunk가 실패해도 앞에서 커밋된 chunk가 있으면 알린다
+            if (affected > 0) {
+                changeCollector.changed(Member.class, EntityChangedEvent.ChangeType.BULK);
+            }
+        }
+    }
+
+    private Chunk executeChunk(MemberSearchCondition condition, Long after, Function<List<Long>, Long> action) {
+        getEntityManager().flush();
+
+        // id 순으로 끊어 읽으므로 이미 처리한 행(ex. 나이가 바뀌어 여전히 조건에 맞는 행)을 다시 처리하지 않는다
+        List<Long> ids = select(member.id)
+                .from(member)
+                .leftJoin(member.team, team)
+                .where(usernameEq(condition.getUsername()),
+                        usernames.startsWith(condition.getUsernamePrefix()),
+                        usernames.containsWithoutIndex(condition.getUsernameContains()),
+                        teamNameEq(condition.getTeamName()),
+                        ageGoe(condition.getAgeGoe()),
+                        ageLoe(condition.getAgeLoe()),
+                        idGt(after))
+                .orderBy(member.id.asc())
+                .limit(chunkSize)
+                .fetch();
+        if (ids.isEmpty()) {
+            return new Chunk(ids, 0);
+        }
+
+        long affected = action.apply(ids);
+        getEntityManager().clear();
+        return new Chunk(ids, affected);
+    }
+
+    private static class Chunk {
+        private final List<Long> ids;
+        private final long affected;
+
+        private Chunk(List<Long> ids, long affected) {
+            this.ids = ids;
+            this.affected = affected;
+        }
+    }
+
+    private BooleanExpression idGt(Long id) {
+        return id == null ? null : member.id.gt(id);
+    }
+
+    private BooleanExpression ageLoe(Integer ageLoe) {
+        return ageLoe == null ? null : member.age.loe(ageLoe);
+    }
+
+    private BooleanExpression ageGoe(Integer ageGoe) {
+        return ageGoe == null ? null : member.age.goe(ageGoe);
+    }
+
+    private BooleanExpression teamNameEq(String teamName) {
+        return StringUtils.hasText(teamName) ? team.name.eq(teamName) : null;
+    }
+
+    private BooleanExpression usernameEq(String username) {
+        return StringUtils.hasText(username) ? member.username.eq(username) : null;
+    }
+}
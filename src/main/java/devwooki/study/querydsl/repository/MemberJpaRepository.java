@@ -1,19 +1,25 @@
 package devwooki.study.querydsl.repository;
 
 import com.querydsl.core.BooleanBuilder;
+import com.querydsl.core.Tuple;
 import com.querydsl.core.types.Projections;
 import com.querydsl.core.types.dsl.BooleanExpression;
 import com.querydsl.jpa.impl.JPAQueryFactory;
 import devwooki.study.querydsl.dto.MemberSearchCondition;
+import devwooki.study.querydsl.dto.MemberTeamColumns;
 import devwooki.study.querydsl.dto.MemberTeamDTO;
 import devwooki.study.querydsl.dto.QMemberTeamDTO;
 import devwooki.study.querydsl.entity.Member;
 import jakarta.persistence.EntityManager;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.util.StringUtils;
 
 import java.util.List;
 import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 import static devwooki.study.querydsl.entity.QMember.member;
 import static devwooki.study.querydsl.entity.QTeam.team;
@@ -27,9 +33,16 @@ public class MemberJpaRepository {
     // 자세한건 orm표준 jpa 13.1 참고(?)
     private final EntityManager em;
     private final JPAQueryFactory queryFactory;
+    private final MemberBulkLoader bulkLoader;
+    private final AssociationBatchLoader associationLoader;
+    private final UsernamePredicates usernames;
 
-    public MemberJpaRepository(EntityManager em) {
+    public MemberJpaRepository(EntityManager em, MemberBulkLoader bulkLoader, AssociationBatchLoader associationLoader,
+                               UsernamePredicates usernames) {
         this.em = em;
+        this.bulkLoader = bulkLoader;
+        this.associationLoader = associationLoader;
+        this.usernames = usernames;
         queryFactory = new JPAQueryFactory(em);
     }
 
@@ -39,6 +52,15 @@ public class MemberJpaRepository {
         em.clear();
     }
 
+    /**
+     * save는 건마다 flush/clear를 하므로 여러 건은 batch insert로 저장한다. (MemberBulkLoader)
+     * 주의 : 트랜잭션 안에서 호출하면 batch마다 clear 하므로 그 트랜잭션의 영속 엔티티가 모두 준영속이 된다.
+     *       호출 후에 바꿀 엔티티는 다시 조회해야 변경감지가 된다.
+     */
+    public BulkLoadResult saveAll(Iterable<Member> members) {
+        return bulkLoader.load(members);
+    }
+
     public Optional<Member> findById(Long id) {
         Member member = em.find(Member.class, id);
         return Optional.ofNullable(member);
@@ -66,6 +88,7 @@ public class MemberJpaRepository {
 
 
     //조건문 검색
+    @Transactional(readOnly = true) //읽기 전용 -> replica로 라우팅 (ReplicationRoutingDataSource)
     public List<MemberTeamDTO> searchBuiler(MemberSearchCondition condition) {
         System.out.println(">>>>>>>>>>" + condition.getAgeGoe());
         BooleanBuilder builder = new BooleanBuilder();
@@ -97,6 +120,7 @@ public class MemberJpaRepository {
                 .fetch();
     }
 
+    @Transactional(readOnly = true)
     public List<MemberTeamDTO> searchWhere(MemberSearchCondition condition) {
         return queryFactory
                 .select(new QMemberTeamDTO(
@@ -109,23 +133,89 @@ public class MemberJpaRepository {
                 .from(member)
                 .leftJoin(member.team, team)
                 .where(usernameEq(condition.getUsername()),
+                        usernames.startsWith(condition.getUsernamePrefix()),
+                        usernames.contains(condition.getUsernameContains()),
                         teamNameEq(condition.getTeamName()),
                         ageGoe(condition.getAgeGoe()),
                         ageLoe(condition.getAgeLoe()))
                 .fetch();
     }
 
+    /**
+     * searchWhere와 같은 쿼리를 List에 모으지 않고 한 행씩 consumer에게 넘긴다.
+     * 커서(forward-only)로 fetchSize만큼씩 읽기 때문에 결과가 아무리 커도 메모리 사용량이 일정하다.
+     * DTO 프로젝션은 영속성 컨텍스트에 올라가지 않으므로 행을 넘긴 뒤 따로 detach 할 것이 없다.
+     * 커서가 열려있는 동안 커넥션이 필요하므로 트랜잭션 안에서 끝까지 소비한다.
+     */
+    @Transactional(readOnly = true)
+    public void streamWhere(MemberSearchCondition condition, int fetchSize, Consumer<MemberTeamDTO> consumer) {
+        try (Stream<MemberTeamDTO> rows = queryFactory
+                .select(new QMemberTeamDTO(
+                        member.id.as("memberId"),
+                        member.username,
+                        member.age,
+                        team.id.as("teamId"),
+                        team.name.as("teamName")
+                ))
+                .from(member)
+                .leftJoin(member.team, team)
+                .where(usernameEq(condition.getUsername()),
+                        usernames.startsWith(condition.getUsernamePrefix()),
+                        usernames.contains(condition.getUsernameContains()),
+                        teamNameEq(condition.getTeamName()),
+                        ageGoe(condition.getAgeGoe()),
+                        ageLoe(condition.getAgeLoe()))
+                .setHint(HibernateHints.HINT_FETCH_SIZE, fetchSize)
+                .setHint(HibernateHints.HINT_READ_ONLY, true)
+                .stream()) {
+            rows.forEach(consumer);
+        }
+    }
+
+    /**
+     * searchWhere와 같은 결과를 MemberTeamColumns(컬럼 배열 + 문자열 사전)에 바로 채운다.
+     * 행마다 DTO를 만들어 List에 쌓지 않고 값만 꺼내 컬럼 배열에 넣으므로, 조회가 끝난 뒤 남아있는 객체 수가 크게 줄어든다.
+     * 읽는 동안의 행마다 할당은 남는다. (하이버네이트의 Object[] + Querydsl의 Tuple, 값을 꺼내면 바로 버려지는 단명 객체)
+     */
+    @Transactional(readOnly = true)
+    public MemberTeamColumns searchColumns(MemberSearchCondition condition, int fetchSize) {
+        MemberTeamColumns columns = new MemberTeamColumns();
+        try (Stream<Tuple> rows = queryFactory
+                .select(member.id, member.username, member.age, team.id, team.name)
+                .from(member)
+                .leftJoin(member.team, team)
+                .where(usernameEq(condition.getUsername()),
+                        usernames.startsWith(condition.getUsernamePrefix()),
+                        usernames.contains(condition.getUsernameContains()),
+                        teamNameEq(condition.getTeamName()),
+                        ageGoe(condition.getAgeGoe()),
+                        ageLoe(condition.getAgeLoe()))
+                .setHint(HibernateHints.HINT_FETCH_SIZE, fetchSize)
+                .setHint(HibernateHints.HINT_READ_ONLY, true)
+                .stream()) {
+            rows.forEach(row -> columns.add(row.get(member.id), row.get(member.username), row.get(member.age),
+                    row.get(team.id), row.get(team.name)));
+        }
+        return columns;
+    }
+
     //만약 반환 타입을 바꾸게 되다면?
+    @Transactional(readOnly = true)
     public List<Member> searchWhereMember(MemberSearchCondition condition) {
-        return queryFactory
+        List<Member> members = queryFactory
                 .selectFrom(member)
                 .leftJoin(member.team, team)
                 //where의 동적쿼리를 재사용할 수 있다 개쩐다!
                 .where(usernameEq(condition.getUsername()),
+                        usernames.startsWith(condition.getUsernamePrefix()),
+                        usernames.contains(condition.getUsernameContains()),
                         teamNameEq(condition.getTeamName()),
                         ageGoe(condition.getAgeGoe()),
                         ageLoe(condition.getAgeLoe()))
                 .fetch();
+        //team 프록시를 하나씩 초기화하지 않도록 in 쿼리로 한 번에 로딩 (N+1 -> 1+1)
+        //프록시 초기화는 조회한 영속성 컨텍스트가 열려있어야 하므로 같은 트랜잭션 안에서 한다
+        return associationLoader.loadTeams(members);
     }
 
     private BooleanExpression allCondition(MemberSearchCondition condition) {
@@ -1,36 +1,79 @@
 package devwooki.study.querydsl.repository;
 
 import com.querydsl.core.QueryResults;
+import com.querydsl.core.types.ParamExpression;
 import com.querydsl.core.types.dsl.BooleanExpression;
+import com.querydsl.core.types.dsl.Param;
 import com.querydsl.jpa.impl.JPAQuery;
-import com.querydsl.jpa.impl.JPAQueryFactory;
+import devwooki.study.querydsl.config.Querydsl4RepositorySupport;
 import devwooki.study.querydsl.dto.MemberSearchCondition;
 import devwooki.study.querydsl.dto.MemberTeamDTO;
 import devwooki.study.querydsl.dto.QMemberTeamDTO;
-import jakarta.persistence.EntityManager;
+import devwooki.study.querydsl.entity.Member;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
-import org.springframework.data.jpa.support.PageableUtils;
 import org.springframework.data.support.PageableExecutionUtils;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.util.StringUtils;
 
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import static devwooki.study.querydsl.entity.QMember.member;
 import static devwooki.study.querydsl.entity.QTeam.team;
 
-public class MemberRepositoryImpl implements MemberRepositroyCustom {
+@Transactional(readOnly = true) //조회 전용 -> replica로 라우팅 (ReplicationRoutingDataSource)
+public class MemberRepositoryImpl extends Querydsl4RepositorySupport implements MemberRepositroyCustom {
 
-    private final JPAQueryFactory queryFactory;
+    //PreparedQuery용 파라미터, 값은 호출할 때 바인딩한다
+    private static final Param<String> USERNAME = new Param<>(String.class, "username");
+    private static final Param<String> USERNAME_PREFIX = new Param<>(String.class, "usernamePrefix");
+    private static final Param<String> TEAM_NAME = new Param<>(String.class, "teamName");
+    private static final Param<Integer> AGE_GOE = new Param<>(Integer.class, "ageGoe");
+    private static final Param<Integer> AGE_LOE = new Param<>(Integer.class, "ageLoe");
+    private static final char LIKE_ESCAPE = '!'; //Querydsl의 startsWith와 같은 escape 문자
 
-    public MemberRepositoryImpl(EntityManager em) {
-        this.queryFactory = new JPAQueryFactory(em);
+    private final UsernamePredicates usernames;
+
+    public MemberRepositoryImpl(UsernamePredicates usernames) {
+        super(Member.class);
+        this.usernames = usernames;
     }
 
+    //조건이 있는지 없는지 조합(최대 32가지)마다 한 번만 JPQL을 만들고, 이후에는 값만 바인딩해서 실행한다
     @Override
     public List<MemberTeamDTO> search(MemberSearchCondition condition) {
-        return queryFactory
+        MemberSearchCondition normalized = condition.normalize();
+        if (normalized.getUsernameContains() != null) {
+            //부분 검색은 색인에서 받은 id 목록이 요청마다 달라서 미리 만들어둘 수 없다
+            return searchDynamic(normalized);
+        }
+        return prepared(searchShape(normalized), () -> searchTemplate(normalized))
+                .fetch(searchBindings(normalized));
+    }
+
+    private JPAQuery<MemberTeamDTO> searchTemplate(MemberSearchCondition condition) {
+        return getQueryFactory()
+                .select(new QMemberTeamDTO(
+                        member.id.as("memberId"),
+                        member.username,
+                        member.age,
+                        team.id.as("teamId"),
+                        team.name.as("teamName")
+                ))
+                .from(member)
+                .leftJoin(member.team, team)
+                .where(condition.getUsername() == null ? null : member.username.eq(USERNAME),
+                        condition.getUsernamePrefix() == null ? null : member.username.like(USERNAME_PREFIX, LIKE_ESCAPE),
+                        condition.getTeamName() == null ? null : team.name.eq(TEAM_NAME),
+                        condition.getAgeGoe() == null ? null : member.age.goe(AGE_GOE),
+                        condition.getAgeLoe() == null ? null : member.age.loe(AGE_LOE));
+    }
+
+    private List<MemberTeamDTO> searchDynamic(MemberSearchCondition condition) {
+        return getQueryFactory()
                 .select(new QMemberTeamDTO(
                         member.id.as("memberId"),
                         member.username,
@@ -41,15 +84,50 @@ public class MemberRepositoryImpl implements MemberRepositroyCustom {
                 .from(member)
                 .leftJoin(member.team, team)
                 .where(usernameEq(condition.getUsername()),
+                        usernames.startsWith(condition.getUsernamePrefix()),
+                        usernames.contains(condition.getUsernameContains()),
                         teamNameEq(condition.getTeamName()),
                         ageGoe(condition.getAgeGoe()),
                         ageLoe(condition.getAgeLoe()))
                 .fetch();
     }
 
+    private static String escapeLike(String value) {
+        return value.replace("!", "!!").replace("%", "!%").replace("_", "!_");
+    }
+
+    private String searchShape(MemberSearchCondition condition) {
+        int shape = (condition.getUsername() == null ? 0 : 1)
+                | (condition.getTeamName() == null ? 0 : 1 << 1)
+                | (condition.getAgeGoe() == null ? 0 : 1 << 2)
+                | (condition.getAgeLoe() == null ? 0 : 1 << 3)
+                | (condition.getUsernamePrefix() == null ? 0 : 1 << 4);
+        return "search/" + shape;
+    }
+
+    private Map<ParamExpression<?>, Object> searchBindings(MemberSearchCondition condition) {
+        Map<ParamExpression<?>, Object> bindings = new HashMap<>();
+        if (condition.getUsername() != null) {
+            bindings.put(USERNAME, condition.getUsername());
+        }
+        if (condition.getUsernamePrefix() != null) {
+            bindings.put(USERNAME_PREFIX, escapeLike(condition.getUsernamePrefix()) + "%");
+        }
+        if (condition.getTeamName() != null) {
+            bindings.put(TEAM_NAME, condition.getTeamName());
+        }
+        if (condition.getAgeGoe() != null) {
+            bindings.put(AGE_GOE, condition.getAgeGoe());
+        }
+        if (condition.getAgeLoe() != null) {
+            bindings.put(AGE_LOE, condition.getAgeLoe());
+        }
+        return bindings;
+    }
+
     @Override
     public Page<MemberTeamDTO> searchPage(MemberSearchCondition condition, Pageable pageable) {
-        QueryResults<MemberTeamDTO> results = queryFactory
+        QueryResults<MemberTeamDTO> results = getQueryFactory()
                 .select(new QMemberTeamDTO(
                         member.id.as("memberId"),
                         member.username,
@@ -60,6 +138,8 @@ public class MemberRepositoryImpl implements MemberRepositroyCustom {
                 .from(member)
                 .leftJoin(member.team, team)
                 .where(usernameEq(condition.getUsername()),
+                        usernames.startsWith(condition.getUsernamePrefix()),
+                        usernames.contains(condition.getUsernameContains()),
                         teamNameEq(condition.getTeamName()),
                         ageGoe(condition.getAgeGoe()),
                         ageLoe(condition.getAgeLoe()))
@@ -77,7 +157,7 @@ public class MemberRepositoryImpl implements MemberRepositroyCustom {
 
     @Override
     public Page<MemberTeamDTO> searchPageComplex(MemberSearchCondition condition, Pageable pageable) {
-        List<MemberTeamDTO> contents = queryFactory
+        JPAQuery<MemberTeamDTO> query = getQueryFactory()
                 .select(new QMemberTeamDTO(
                         member.id.as("memberId"),
                         member.username,
@@ -88,26 +168,19 @@ public class MemberRepositoryImpl implements MemberRepositroyCustom {
                 .from(member)
                 .leftJoin(member.team, team)
                 .where(usernameEq(condition.getUsername()),
+                        usernames.startsWith(condition.getUsernamePrefix()),
+                        usernames.contains(condition.getUsernameContains()),
                         teamNameEq(condition.getTeamName()),
                         ageGoe(condition.getAgeGoe()),
-                        ageLoe(condition.getAgeLoe()))
+                        ageLoe(condition.getAgeLoe()));
+
+        //count 쿼리는 content 쿼리에서 만든다 -> 프로젝션 없이 count(*), 팀 조건이 없으면 team join도 빠진다
+        long total = countOf(query).getAsLong();
+
+        List<MemberTeamDTO> contents = query
                 .offset(pageable.getOffset())   //페이지 시작점
                 .limit(pageable.getPageSize())  //페이지 크기
                 .fetch();
-
-        Long total = queryFactory.select(new QMemberTeamDTO(
-                        member.id.as("memberId"),
-                        member.username,
-                        member.age,
-                        team.id.as("teamId"),
-                        team.name.as("teamName")
-                ))
-                .from(member)
-                .leftJoin(member.team, team)
-                .where(usernameEq(condition.getUsername()),
-                        teamNameEq(condition.getTeamName()),
-                        ageGoe(condition.getAgeGoe()),
-                        ageLoe(condition.getAgeLoe())).fetchCount();
         //fetchResult를 이용하지 않고 쿼리 2번을 직접 날려서 처리한다.
         //어떤 장점이 있는가? 상황에 따라 다르지만 최적화 가능
         // Content는 복잡하고, count쿼리만이 단순할 때 -> join을2번하면 부하 더 크니까 최적화 용도로
@@ -116,7 +189,9 @@ public class MemberRepositoryImpl implements MemberRepositroyCustom {
     }
 
     public Page<MemberTeamDTO> searchPageComplex2(MemberSearchCondition condition, Pageable pageable) {
-        List<MemberTeamDTO> contents = queryFactory
+        //색인 조회(in 목록)는 한 번만 하고 content / count 쿼리에 같이 쓴다
+        BooleanExpression usernameContains = usernames.contains(condition.getUsernameContains());
+        List<MemberTeamDTO> contents = getQueryFactory()
                 .select(new QMemberTeamDTO(
                         member.id.as("memberId"),
                         member.username,
@@ -127,6 +202,8 @@ public class MemberRepositoryImpl implements MemberRepositroyCustom {
                 .from(member)
                 .leftJoin(member.team, team)
                 .where(usernameEq(condition.getUsername()),
+                        usernames.startsWith(condition.getUsernamePrefix()),
+                        usernameContains,
                         teamNameEq(condition.getTeamName()),
                         ageGoe(condition.getAgeGoe()),
                         ageLoe(condition.getAgeLoe()))
@@ -134,7 +211,7 @@ public class MemberRepositoryImpl implements MemberRepositroyCustom {
                 .limit(pageable.getPageSize())  //페이지 크기
                 .fetch();
 
-        JPAQuery<MemberTeamDTO> countQuery = queryFactory.select(new QMemberTeamDTO(
+        JPAQuery<MemberTeamDTO> countQuery = getQueryFactory().select(new QMemberTeamDTO(
                         member.id.as("memberId"),
                         member.username,
                         member.age,
@@ -144,6 +221,8 @@ public class MemberRepositoryImpl implements MemberRepositroyCustom {
                 .from(member)
                 .leftJoin(member.team, team)
                 .where(usernameEq(condition.getUsername()),
+                        usernames.startsWith(condition.getUsernamePrefix()),
+                        usernameContains,
                         teamNameEq(condition.getTeamName()),
                         ageGoe(condition.getAgeGoe()),
                         ageLoe(condition.getAgeLoe()));
@@ -152,10 +231,33 @@ public class MemberRepositoryImpl implements MemberRepositroyCustom {
         // 생략가능한 경우
         //  1. 페이지 시작이면서 컨텐츠 사이즈가 페이지 사이즈보다 작을 때
         //  2. 마지막 페이지일때(offset + 컨텐츠 사이즈 < 전체 사이즈)
-        return PageableExecutionUtils.getPage(contents, pageable, countQuery::fetchCount);
+        // countOf : 프로젝션과 불필요한 left join을 걷어낸 count 쿼리로 변환
+        // cachedCountOf : 같은 검색조건의 count는 캐시에서 꺼낸다 (Member/Team 변경시 무효화)
+        return PageableExecutionUtils.getPage(contents, pageable, cachedCountOf(condition.normalize(), countQuery));
         //return PageableExecutionUtils.getPage(contents, pageable, () -> countQuery.fetchCount());
     }
 
+    @Override
+    public Page<MemberTeamDTO> searchPageConcurrent(MemberSearchCondition condition, Pageable pageable) {
+        //count는 다른 스레드에서 실행되고, content를 가져오는 동안 같이 진행된다
+        return applyPaginationConcurrently(pageable, query -> query
+                .select(new QMemberTeamDTO(
+                        member.id.as("memberId"),
+                        member.username,
+                        member.age,
+                        team.id.as("teamId"),
+                        team.name.as("teamName")
+                ))
+                .from(member)
+                .leftJoin(member.team, team)
+                .where(usernameEq(condition.getUsername()),
+                        usernames.startsWith(condition.getUsernamePrefix()),
+                        usernames.contains(condition.getUsernameContains()),
+                        teamNameEq(condition.getTeamName()),
+                        ageGoe(condition.getAgeGoe()),
+                        ageLoe(condition.getAgeLoe())));
+    }
+
     private BooleanExpression ageLoe(Integer ageLoe) {
         return ageLoe == null ? null : member.age.loe(ageLoe);
 
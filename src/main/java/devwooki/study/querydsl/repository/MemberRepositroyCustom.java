@@ -20,4 +20,9 @@ public interface MemberRepositroyCustom {
      * */
     Page<MemberTeamDTO> searchPageComplex(MemberSearchCondition condition, Pageable pageable);
     Page<MemberTeamDTO> searchPageComplex2(MemberSearchCondition condition, Pageable pageable);
+
+    /**
+     * content 쿼리와 count 쿼리를 동시에 실행하는 방법 (count는 별도 커넥션)
+     * */
+    Page<MemberTeamDTO> searchPageConcurrent(MemberSearchCondition condition, Pageable pageable);
 }
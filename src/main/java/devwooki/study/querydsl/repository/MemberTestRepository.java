@@ -1,30 +1,48 @@
 package devwooki.study.querydsl.repository;
 
+import com.querydsl.core.Tuple;
 import com.querydsl.core.types.dsl.BooleanExpression;
 import com.querydsl.jpa.impl.JPAQuery;
+import devwooki.study.querydsl.config.CursorPage;
+import devwooki.study.querydsl.config.KeysetCursor;
 import devwooki.study.querydsl.config.Querydsl4RepositorySupport;
 import devwooki.study.querydsl.dto.MemberSearchCondition;
+import devwooki.study.querydsl.dto.MemberTeamDTO;
+import devwooki.study.querydsl.dto.QMemberTeamDTO;
 import devwooki.study.querydsl.entity.Member;
 import devwooki.study.querydsl.entity.QMember;
 import devwooki.study.querydsl.entity.QTeam;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.support.PageableExecutionUtils;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.util.StringUtils;
 
 import java.util.List;
 
 import static devwooki.study.querydsl.entity.QMember.*;
 import static devwooki.study.querydsl.entity.QTeam.*;
 
+@Repository
+@Transactional(readOnly = true) //조회 전용 -> replica로 라우팅 (ReplicationRoutingDataSource)
 public class MemberTestRepository extends Querydsl4RepositorySupport {
-    public MemberTestRepository(Class<?> domainClass) {
-        super(domainClass);
+    private final AssociationBatchLoader associationLoader;
+    private final UsernamePredicates usernames;
+
+    public MemberTestRepository(AssociationBatchLoader associationLoader, UsernamePredicates usernames) {
+        super(Member.class);
+        this.associationLoader = associationLoader;
+        this.usernames = usernames;
     }
 
+    //프록시 초기화(loadTeams)까지 같은 영속성 컨텍스트에서 끝내야 한다
+    @Transactional(readOnly = true)
     public List<Member> basicSelect() {
-        return select(member)
+        List<Member> members = select(member)
                 .from(member)
                 .fetch();
+        return associationLoader.loadTeams(members);
     }
 
     public List<Member> basicSelectFrom() {
@@ -36,6 +54,8 @@ public class MemberTestRepository extends Querydsl4RepositorySupport {
         JPAQuery<Member> query = selectFrom(member)
                 .leftJoin(member.team, team)
                 .where(usernameEq(condition.getUsername()),
+                        usernames.startsWith(condition.getUsernamePrefix()),
+                        usernames.contains(condition.getUsernameContains()),
                         teamNameEq(condition.getTeamName()),
                         ageGoe(condition.getAgeGoe()),
                         ageLoe(condition.getAgeLoe())
@@ -44,12 +64,14 @@ public class MemberTestRepository extends Querydsl4RepositorySupport {
         return PageableExecutionUtils.getPage(content, pageable, query::fetchCount);
     }
 
-    // QueryDSL4Support 활용
+    // QueryDSL4Support 활용 (count 쿼리는 content 쿼리로부터 자동으로 만들어진다)
     public Page<Member> applyPagenation(MemberSearchCondition condition, Pageable pageable) {
         return applyPagination(pageable, query ->
                 query.selectFrom(member)
                         .leftJoin(member.team, team)
                         .where(usernameEq(condition.getUsername()),
+                                usernames.startsWith(condition.getUsernamePrefix()),
+                                usernames.contains(condition.getUsernameContains()),
                                 teamNameEq(condition.getTeamName()),
                                 ageGoe(condition.getAgeGoe()),
                                 ageLoe(condition.getAgeLoe())
@@ -63,13 +85,61 @@ public class MemberTestRepository extends Querydsl4RepositorySupport {
                         contentQuery.selectFrom(member)
                                 .leftJoin(member.team, team)
                                 .where(usernameEq(condition.getUsername()),
+                                        usernames.startsWith(condition.getUsernamePrefix()),
+                                        usernames.contains(condition.getUsernameContains()),
                                         teamNameEq(condition.getTeamName()),
                                         ageGoe(condition.getAgeGoe()),
                                         ageLoe(condition.getAgeLoe())
                                 ),
-                countQuery ->
-                        countQuery.select(member.count())
-                                .from(member)
+                //count 쿼리는 프로젝션 없이 count만, team 조인은 팀 조건이 있을 때만 건다 (조건은 content와 동일해야 한다)
+                countQuery -> {
+                    JPAQuery<Long> query = countQuery.select(member.count())
+                            .from(member);
+                    if (StringUtils.hasText(condition.getTeamName())) {
+                        query.leftJoin(member.team, team);
+                    }
+                    return query.where(usernameEq(condition.getUsername()),
+                            usernames.startsWith(condition.getUsernamePrefix()),
+                            usernames.contains(condition.getUsernameContains()),
+                            teamNameEq(condition.getTeamName()),
+                            ageGoe(condition.getAgeGoe()),
+                            ageLoe(condition.getAgeLoe())
+                    );
+                }
+        );
+    }
+
+    // group by 페이징 : count 쿼리는 그룹 개수를 센다 (select count(*) from (group by 쿼리))
+    public Page<Tuple> countByAge(Pageable pageable) {
+        return applyPagination(pageable, query ->
+                query.select(member.age, member.count())
+                        .from(member)
+                        .groupBy(member.age)
+                        .orderBy(member.age.asc())
+        );
+    }
+
+    // Keyset 페이징 : age, member.id 순으로 정렬하고 커서 이후의 행만 읽는다
+    public CursorPage<MemberTeamDTO> searchAfter(MemberSearchCondition condition, String cursor, int size) {
+        return applyKeysetPagination(KeysetCursor.decode(cursor, Integer::valueOf), size,
+                member.age, member.id,
+                MemberTeamDTO::getAge, MemberTeamDTO::getMemberId,
+                query -> query.select(new QMemberTeamDTO(
+                                member.id.as("memberId"),
+                                member.username,
+                                member.age,
+                                team.id.as("teamId"),
+                                team.name.as("teamName")
+                        ))
+                        .from(member)
+                        .leftJoin(member.team, team)
+                        .where(usernameEq(condition.getUsername()),
+                                usernames.startsWith(condition.getUsernamePrefix()),
+                                usernames.contains(condition.getUsernameContains()),
+                                teamNameEq(condition.getTeamName()),
+                                ageGoe(condition.getAgeGoe()),
+                                ageLoe(condition.getAgeLoe())
+                        )
         );
     }
 
@@ -0,0 +1,43 @@
+package devwooki.study.querydsl.repository;
+
+import com.querydsl.core.types.dsl.BooleanExpression;
+import devwooki.study.querydsl.config.Querydsl4RepositorySupport;
+import devwooki.study.querydsl.entity.CacheRegions;
+import devwooki.study.querydsl.entity.Team;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Repository;
+import org.springframework.util.StringUtils;
+
+import java.util.List;
+
+import static devwooki.study.querydsl.entity.QMember.member;
+import static devwooki.study.querydsl.entity.QTeam.team;
+
+@Repository
+public class TeamQueryRepository extends Querydsl4RepositorySupport {
+    public TeamQueryRepository() {
+        super(Team.class);
+    }
+
+    //팀 + 소속 회원 페이징 : 팀 id만 먼저 페이징하고, 그 팀들만 members를 fetch join 한다
+    public Page<Team> searchPageWithMembers(String teamName, Pageable pageable) {
+        return applyPaginationByIds(pageable, team.id, Team::getId,
+                query -> query.selectFrom(team)
+                        .where(teamNameEq(teamName)),
+                query -> query.selectFrom(team)
+                        .leftJoin(team.members, member).fetchJoin()
+        );
+    }
+
+    //팀 이름 조회 : 쿼리 캐시 + Team 2차 캐시 -> 팀이 변경되기 전까지 DB를 조회하지 않는다
+    public List<Team> findByName(String teamName) {
+        return selectFromCacheable(team, CacheRegions.TEAM_QUERY)
+                .where(teamNameEq(teamName))
+                .fetch();
+    }
+
+    private BooleanExpression teamNameEq(String teamName) {
+        return StringUtils.hasText(teamName) ? team.name.eq(teamName) : null;
+    }
+}
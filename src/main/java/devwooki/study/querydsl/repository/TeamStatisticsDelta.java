@@ -0,0 +1,59 @@
+package devwooki.study.querydsl.repository;
+
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 한 트랜잭션(세션) 동안 모은 팀별 통계 변화량
+ * 행마다 통계를 갱신하지 않고 커밋 직전에 팀마다 한 번씩 반영한다.
+ */
+final class TeamStatisticsDelta {
+
+    final Set<Long> createdTeams = new LinkedHashSet<>();
+    final Set<Long> deletedTeams = new LinkedHashSet<>();
+    final Set<Long> recomputeTeams = new LinkedHashSet<>(); //변경 전 값을 모르는 경우 -> 전체 재계산
+    final Map<Long, TeamDelta> teams = new LinkedHashMap<>();
+
+    void add(Long teamId, int age) {
+        if (teamId != null) {
+            teams.computeIfAbsent(teamId, id -> new TeamDelta()).add(age);
+        }
+    }
+
+    void remove(Long teamId, int age) {
+        if (teamId != null) {
+            teams.computeIfAbsent(teamId, id -> new TeamDelta()).remove(age);
+        }
+    }
+
+    void recompute(Long teamId) {
+        if (teamId != null) {
+            recomputeTeams.add(teamId);
+        }
+    }
+
+    static final class TeamDelta {
+        long count;
+        long sum;
+        Integer addedMin;
+        Integer addedMax;
+        Integer removedMin;
+        Integer removedMax;
+
+        void add(int age) {
+            count++;
+            sum += age;
+            addedMin = addedMin == null ? age : Math.min(addedMin, age);
+            addedMax = addedMax == null ? age : Math.max(addedMax, age);
+        }
+
+        void remove(int age) {
+            count--;
+            sum -= age;
+            removedMin = removedMin == null ? age : Math.min(removedMin, age);
+            removedMax = removedMax == null ? age : Math.max(removedMax, age);
+        }
+    }
+}
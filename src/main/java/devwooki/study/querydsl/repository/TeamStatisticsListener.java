@@ -0,0 +1,204 @@
+package devwooki.study.querydsl.repository;
+
+import devwooki.study.querydsl.entity.Member;
+import devwooki.study.querydsl.entity.Team;
+import jakarta.annotation.PostConstruct;
+import jakarta.persistence.EntityManagerFactory;
+import lombok.RequiredArgsConstructor;
+import org.hibernate.action.spi.AfterTransactionCompletionProcess;
+import org.hibernate.action.spi.BeforeTransactionCompletionProcess;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.engine.spi.SessionImplementor;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.EventSource;
+import org.hibernate.event.spi.EventType;
+import org.hibernate.event.spi.PostDeleteEvent;
+import org.hibernate.event.spi.PostDeleteEventListener;
+import org.hibernate.event.spi.PostInsertEvent;
+import org.hibernate.event.spi.PostInsertEventListener;
+import org.hibernate.event.spi.PostUpdateEvent;
+import org.hibernate.event.spi.PostUpdateEventListener;
+import org.hibernate.persister.entity.EntityPersister;
+import org.hibernate.proxy.HibernateProxy;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Member/Team 변경을 TeamStatistics에 증분 반영하는 하이버네이트 이벤트 리스너
+ * 1. insert/update/delete 이벤트마다 팀별 변화량(개수, 합계, 추가/삭제된 나이의 최소/최대)을 세션별로 모은다.
+ *    (JPA 엔티티 리스너와 달리 update 이벤트에서 변경 전 값을 알 수 있다)
+ * 2. 커밋 직전(BeforeTransactionCompletionProcess)에 팀마다 update 쿼리 한 번으로 반영한다. -> 원래 변경과 같은 트랜잭션
+ *    개수/합계는 상대값(count = count + ?)으로 더하므로 동시에 커밋되는 트랜잭션끼리 덮어쓰지 않는다.
+ * 3. 최소/최대는 삭제된 나이가 현재 경계값일 때만 해당 팀의 회원으로 다시 계산한다.
+ * 4. 통계 행이 없으면 (기능 도입 전에 만들어진 팀) 다시 계산해서 upsert 한다. (동시에 만드는 트랜잭션끼리 충돌하지 않는다)
+ * 벌크 update/delete 쿼리는 이벤트가 발생하지 않는다. -> TeamStatisticsReconciler가 다시 맞춘다.
+ */
+@Component
+@RequiredArgsConstructor
+public class TeamStatisticsListener implements PostInsertEventListener, PostUpdateEventListener, PostDeleteEventListener {
+
+    private final EntityManagerFactory entityManagerFactory;
+    private final Map<EventSource, TeamStatisticsDelta> pending = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void register() {
+        EventListenerRegistry registry = entityManagerFactory.unwrap(SessionFactoryImplementor.class)
+                .getServiceRegistry()
+                .getService(EventListenerRegistry.class);
+        registry.appendListeners(EventType.POST_INSERT, this);
+        registry.appendListeners(EventType.POST_UPDATE, this);
+        registry.appendListeners(EventType.POST_DELETE, this);
+    }
+
+    @Override
+    public void onPostInsert(PostInsertEvent event) {
+        if (event.getEntity() instanceof Member) {
+            deltaOf(event.getSession()).add(teamIdOf(event.getPersister(), event.getState()),
+                    ageOf(event.getPersister(), event.getState()));
+        } else if (event.getEntity() instanceof Team) {
+            deltaOf(event.getSession()).createdTeams.add((Long) event.getId());
+        }
+    }
+
+    @Override
+    public void onPostUpdate(PostUpdateEvent event) {
+        if (!(event.getEntity() instanceof Member)) {
+            return;
+        }
+        EntityPersister persister = event.getPersister();
+        Long teamId = teamIdOf(persister, event.getState());
+        int age = ageOf(persister, event.getState());
+        TeamStatisticsDelta delta = deltaOf(event.getSession());
+        if (event.getOldState() == null) {
+            //준영속 엔티티를 merge 없이 update 한 경우 등 변경 전 값을 모른다
+            delta.recompute(teamId);
+            return;
+        }
+        Long oldTeamId = teamIdOf(persister, event.getOldState());
+        int oldAge = ageOf(persister, event.getOldState());
+        if (Objects.equals(teamId, oldTeamId) && age == oldAge) {
+            return; //통계와 상관 없는 필드(username 등)만 바뀌었다
+        }
+        delta.remove(oldTeamId, oldAge);
+        delta.add(teamId, age);
+    }
+
+    @Override
+    public void onPostDelete(PostDeleteEvent event) {
+        if (event.getEntity() instanceof Member) {
+            deltaOf(event.getSession()).remove(teamIdOf(event.getPersister(), event.getDeletedState()),
+                    ageOf(event.getPersister(), event.getDeletedState()));
+        } else if (event.getEntity() instanceof Team) {
+            deltaOf(event.getSession()).deletedTeams.add((Long) event.getId());
+        }
+    }
+
+    @Override
+    public boolean requiresPostCommitHandling(EntityPersister persister) {
+        return false;
+    }
+
+    //세션(트랜잭션)마다 처음 한 번만 커밋 직전/직후 작업을 등록한다
+    private TeamStatisticsDelta deltaOf(EventSource session) {
+        return pending.computeIfAbsent(session, s -> {
+            s.getActionQueue().registerProcess((BeforeTransactionCompletionProcess) current -> {
+                TeamStatisticsDelta delta = pending.remove(s);
+                if (delta != null) {
+                    apply(current, delta);
+                }
+            });
+            //롤백되면 before 작업이 실행되지 않으므로 여기서 정리한다
+            s.getActionQueue().registerProcess((AfterTransactionCompletionProcess) (success, current) -> pending.remove(s));
+            return new TeamStatisticsDelta();
+        });
+    }
+
+    private void apply(SessionImplementor session, TeamStatisticsDelta delta) {
+        for (Long teamId : delta.createdTeams) {
+            TeamStatisticsRepository.upsert(session, teamId, 0, 0, null, null);
+        }
+        delta.teams.forEach((teamId, change) -> {
+            if (delta.deletedTeams.contains(teamId) || delta.recomputeTeams.contains(teamId)) {
+                return;
+            }
+            if (!applyChange(session, teamId, change)) {
+                recompute(session, teamId); //통계 행이 아직 없다 (기능 도입 전에 만들어진 팀)
+            }
+        });
+        for (Long teamId : delta.recomputeTeams) {
+            if (!delta.deletedTeams.contains(teamId)) {
+                recompute(session, teamId);
+            }
+        }
+        for (Long teamId : delta.deletedTeams) {
+            session.createMutationQuery("delete from TeamStatistics s where s.teamId = :teamId")
+                    .setParameter("teamId", teamId)
+                    .executeUpdate();
+        }
+    }
+
+    private boolean applyChange(SessionImplementor session, Long teamId, TeamStatisticsDelta.TeamDelta change) {
+        StringBuilder update = new StringBuilder("update TeamStatistics s set s.memberCount = s.memberCount + :count, s.ageSum = s.ageSum + :sum");
+        if (change.addedMin != null) {
+            update.append(", s.minAge = case when s.minAge is null or s.minAge > :addedMin then :addedMin else s.minAge end")
+                    .append(", s.maxAge = case when s.maxAge is null or s.maxAge < :addedMax then :addedMax else s.maxAge end");
+        }
+        var query = session.createMutationQuery(update.append(" where s.teamId = :teamId").toString())
+                .setParameter("count", change.count)
+                .setParameter("sum", change.sum)
+                .setParameter("teamId", teamId);
+        if (change.addedMin != null) {
+            query.setParameter("addedMin", change.addedMin).setParameter("addedMax", change.addedMax);
+        }
+        if (query.executeUpdate() == 0) {
+            return false;
+        }
+
+        //update로 행 락을 잡은 상태에서 경계값이 빠졌는지 확인한다
+        if (change.removedMin != null) {
+            Object[] bounds = session.createSelectionQuery(
+                            "select s.minAge, s.maxAge from TeamStatistics s where s.teamId = :teamId", Object[].class)
+                    .setParameter("teamId", teamId)
+                    .getSingleResult();
+            Integer minAge = (Integer) bounds[0];
+            Integer maxAge = (Integer) bounds[1];
+            if (minAge == null || maxAge == null || change.removedMin <= minAge || change.removedMax >= maxAge) {
+                session.createMutationQuery("update TeamStatistics s"
+                                + " set s.minAge = (select min(m.age) from Member m where m.team.id = :teamId),"
+                                + " s.maxAge = (select max(m.age) from Member m where m.team.id = :teamId)"
+                                + " where s.teamId = :teamId")
+                        .setParameter("teamId", teamId)
+                        .executeUpdate();
+            }
+        }
+        return true;
+    }
+
+    private void recompute(SessionImplementor session, Long teamId) {
+        Object[] actual = session.createSelectionQuery(
+                        "select count(m), coalesce(sum(m.age), 0), min(m.age), max(m.age) from Member m where m.team.id = :teamId",
+                        Object[].class)
+                .setParameter("teamId", teamId)
+                .getSingleResult();
+        TeamStatisticsRepository.upsert(session, teamId, ((Number) actual[0]).longValue(), ((Number) actual[1]).longValue(),
+                (Integer) actual[2], (Integer) actual[3]);
+    }
+
+    private static Long teamIdOf(EntityPersister persister, Object[] state) {
+        Object team = state[persister.getEntityMetamodel().getPropertyIndex("team")];
+        if (team == null) {
+            return null;
+        }
+        if (team instanceof HibernateProxy proxy) {
+            return (Long) proxy.getHibernateLazyInitializer().getIdentifier();
+        }
+        return ((Team) team).getId();
+    }
+
+    private static int ageOf(EntityPersister persister, Object[] state) {
+        return (Integer) state[persister.getEntityMetamodel().getPropertyIndex("age")];
+    }
+}
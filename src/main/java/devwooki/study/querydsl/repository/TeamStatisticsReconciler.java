@@ -0,0 +1,57 @@
+package devwooki.study.querydsl.repository;
+
+import devwooki.study.querydsl.entity.EntityChangedEvent;
+import devwooki.study.querydsl.entity.Member;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * TeamStatistics 주기적 보정
+ * - 주기 : querydsl.team-statistics.reconcile-interval (기동 직후 한 번 실행해서 기존 팀의 통계 행도 만든다)
+ * - 회원 벌크 연산(MemberBulkRepository) 후에는 리스너를 거치지 않으므로 바로 보정한다.
+ *   보정은 팀 전체를 집계하므로 벌크 연산을 호출한 스레드가 아니라 비동기(@Async)로 실행한다.
+ *   벌크 연산이 연달아 오면 한 번으로 합친다. (실행 중에 요청이 또 오면 끝난 뒤 한 번 더 돈다)
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class TeamStatisticsReconciler {
+
+    private final TeamStatisticsRepository teamStatisticsRepository;
+    private final AtomicBoolean requested = new AtomicBoolean();
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    @Scheduled(initialDelayString = "${querydsl.team-statistics.reconcile-initial-delay:PT10S}",
+            fixedDelayString = "${querydsl.team-statistics.reconcile-interval:PT10M}")
+    public void reconcile() {
+        int fixed = teamStatisticsRepository.reconcile();
+        if (fixed > 0) {
+            log.info("TeamStatistics reconciled, fixed rows={}", fixed);
+        }
+    }
+
+    @Async
+    @EventListener
+    public void onEntityChanged(EntityChangedEvent event) {
+        if (!event.contains(EntityChangedEvent.ChangeType.BULK) || event.getEntityType() != Member.class) {
+            return;
+        }
+        requested.set(true);
+        //이미 보정 중인 스레드가 있으면 그 스레드가 requested를 보고 다시 돈다
+        while (requested.get() && running.compareAndSet(false, true)) {
+            try {
+                while (requested.getAndSet(false)) {
+                    reconcile();
+                }
+            } finally {
+                running.set(false);
+            }
+        }
+    }
+}
@@ -0,0 +1,151 @@
+package devwooki.study.querydsl.repository;
+
+import com.querydsl.core.Tuple;
+import com.querydsl.core.types.dsl.Expressions;
+import com.querydsl.core.types.dsl.NumberExpression;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import devwooki.study.querydsl.entity.TeamStatistics;
+import jakarta.persistence.EntityManager;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.Session;
+import org.hibernate.type.StandardBasicTypes;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static devwooki.study.querydsl.entity.QMember.member;
+import static devwooki.study.querydsl.entity.QTeam.team;
+import static devwooki.study.querydsl.entity.QTeamStatistics.teamStatistics;
+
+/**
+ * 팀 통계 조회 (group by 없이 팀 id로 한 행)
+ * 값은 TeamStatisticsListener가 증분으로 갱신하고, reconcile()로 실제 집계와 어긋난 행을 바로잡는다.
+ */
+@Slf4j
+@Repository
+@Transactional(readOnly = true)
+public class TeamStatisticsRepository {
+
+    private final EntityManager em;
+    private final JPAQueryFactory queryFactory;
+
+    public TeamStatisticsRepository(EntityManager em) {
+        this.em = em;
+        this.queryFactory = new JPAQueryFactory(em);
+    }
+
+    public TeamStatistics findByTeamId(Long teamId) {
+        return em.find(TeamStatistics.class, teamId);
+    }
+
+    public List<TeamStatistics> findAll() {
+        return queryFactory.selectFrom(teamStatistics).fetch();
+    }
+
+    /**
+     * 회원 테이블을 팀별로 집계해서 통계 행과 비교하고, 다른 행만 고친다.
+     * 벌크 쿼리처럼 이벤트 없이 바뀐 경우나 집계하는 동안 다른 트랜잭션이 반영한 값은 다음 실행에서 다시 맞춰진다.
+     * 1. 통계 행을 먼저 읽고 회원을 집계한다. -> 그 사이 리스너가 커밋한 변경은 집계에만 보여서 어긋난 것처럼 보일 수 있다.
+     * 2. 그래서 행을 덮어쓸 때는 읽은 값이 그대로인 경우에만 바꾼다. (compare-and-set)
+     *    리스너의 상대값 갱신(count = count + ?)이 먼저 커밋됐다면 건너뛰고 다음 실행에서 다시 비교한다.
+     * @return 고친 행 수
+     */
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    public int reconcile() {
+        Map<Long, TeamStatistics> stored = new HashMap<>();
+        for (TeamStatistics statistics : findAll()) {
+            stored.put(statistics.getTeamId(), statistics);
+        }
+
+        //하이버네이트는 int 합계를 Long으로 돌려주므로 Long 타입으로 받는다
+        NumberExpression<Long> ageSumOf = Expressions.numberTemplate(Long.class, "coalesce(sum({0}), 0)", member.age);
+        List<Tuple> actual = queryFactory
+                .select(team.id, member.count(), ageSumOf, member.age.min(), member.age.max())
+                .from(team)
+                .leftJoin(team.members, member)
+                .groupBy(team.id)
+                .fetch();
+
+        int fixed = 0;
+        for (Tuple row : actual) {
+            Long teamId = row.get(team.id);
+            long count = row.get(member.count());
+            long ageSum = row.get(ageSumOf);
+            Integer minAge = row.get(member.age.min());
+            Integer maxAge = row.get(member.age.max());
+
+            TeamStatistics statistics = stored.remove(teamId);
+            if (statistics == null) {
+                //그 사이 리스너가 만들었을 수 있다 -> 덮어쓰지 않고 다음 실행에서 비교한다
+                fixed += insertIfAbsent(em, teamId, count, ageSum, minAge, maxAge);
+            } else if (!statistics.matches(count, ageSum, minAge, maxAge)) {
+                if (compareAndSet(statistics, count, ageSum, minAge, maxAge)) {
+                    log.warn("TeamStatistics drift teamId={}, stored={}, actual=count:{} sum:{} min:{} max:{}",
+                            teamId, statistics, count, ageSum, minAge, maxAge);
+                    fixed++;
+                } else {
+                    log.debug("TeamStatistics teamId={} changed while reconciling, retry next time", teamId);
+                }
+            }
+        }
+        //삭제된 팀 (리스너가 이미 지웠을 수 있다)
+        for (Long orphan : stored.keySet()) {
+            fixed += queryFactory.delete(teamStatistics)
+                    .where(teamStatistics.teamId.eq(orphan))
+                    .execute();
+        }
+        return fixed;
+    }
+
+    //읽어 둔 값(expected)이 그대로일 때만 바꾼다. update가 행 락을 잡으므로 리스너의 갱신과 섞이지 않는다
+    private boolean compareAndSet(TeamStatistics expected, long count, long ageSum, Integer minAge, Integer maxAge) {
+        return em.createQuery("update TeamStatistics s"
+                        + " set s.memberCount = :count, s.ageSum = :sum, s.minAge = :minAge, s.maxAge = :maxAge"
+                        + " where s.teamId = :teamId and s.memberCount = :expectedCount and s.ageSum = :expectedSum"
+                        + " and coalesce(s.minAge, :none) = :expectedMin and coalesce(s.maxAge, :none) = :expectedMax")
+                .setParameter("count", count)
+                .setParameter("sum", ageSum)
+                .setParameter("minAge", minAge)
+                .setParameter("maxAge", maxAge)
+                .setParameter("teamId", expected.getTeamId())
+                .setParameter("expectedCount", expected.getMemberCount())
+                .setParameter("expectedSum", expected.getAgeSum())
+                .setParameter("none", Integer.MIN_VALUE)
+                .setParameter("expectedMin", expected.getMinAge() == null ? Integer.MIN_VALUE : expected.getMinAge())
+                .setParameter("expectedMax", expected.getMaxAge() == null ? Integer.MIN_VALUE : expected.getMaxAge())
+                .executeUpdate() == 1;
+    }
+
+    /**
+     * 통계 행을 만들거나 덮어쓴다. (MariaDB insert ... on duplicate key update)
+     * 행이 없는지 확인하고 insert 하면, 같은 팀의 행을 동시에 만드는 트랜잭션끼리 기본키 충돌이 난다.
+     * (리스너의 recompute, 새 팀 생성)
+     */
+    static void upsert(EntityManager em, Long teamId, long count, long sum, Integer minAge, Integer maxAge) {
+        insert(em, " on duplicate key update member_count = values(member_count), age_sum = values(age_sum),"
+                + " min_age = values(min_age), max_age = values(max_age)", teamId, count, sum, minAge, maxAge);
+    }
+
+    //행이 이미 있으면 그대로 둔다
+    private static int insertIfAbsent(EntityManager em, Long teamId, long count, long sum, Integer minAge, Integer maxAge) {
+        return insert(em, " on duplicate key update team_id = team_id", teamId, count, sum, minAge, maxAge);
+    }
+
+    private static int insert(EntityManager em, String onDuplicateKey, Long teamId, long count, long sum,
+                              Integer minAge, Integer maxAge) {
+        return em.unwrap(Session.class)
+                .createNativeQuery("insert into team_statistics (team_id, member_count, age_sum, min_age, max_age)"
+                        + " values (:teamId, :count, :sum, :minAge, :maxAge)" + onDuplicateKey)
+                .addSynchronizedEntityClass(TeamStatistics.class)
+                .setParameter("teamId", teamId)
+                .setParameter("count", count)
+                .setParameter("sum", sum)
+                .setParameter("minAge", minAge, StandardBasicTypes.INTEGER)
+                .setParameter("maxAge", maxAge, StandardBasicTypes.INTEGER)
+                .executeUpdate();
+    }
+}
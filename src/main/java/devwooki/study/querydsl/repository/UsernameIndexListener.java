@@ -0,0 +1,90 @@
+package devwooki.study.querydsl.repository;
+
+import devwooki.study.querydsl.entity.Member;
+import jakarta.annotation.PostConstruct;
+import jakarta.persistence.EntityManagerFactory;
+import lombok.RequiredArgsConstructor;
+import org.hibernate.action.spi.AfterTransactionCompletionProcess;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.EventSource;
+import org.hibernate.event.spi.EventType;
+import org.hibernate.event.spi.PostDeleteEvent;
+import org.hibernate.event.spi.PostDeleteEventListener;
+import org.hibernate.event.spi.PostInsertEvent;
+import org.hibernate.event.spi.PostInsertEventListener;
+import org.hibernate.event.spi.PostUpdateEvent;
+import org.hibernate.event.spi.PostUpdateEventListener;
+import org.hibernate.persister.entity.EntityPersister;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Member.username 변경을 UsernameNgramIndex에 반영하는 하이버네이트 이벤트 리스너
+ * 세션(트랜잭션)마다 (회원 id -> username, 삭제면 null)만 모아두고 커밋된 경우에만 한 번에 반영한다.
+ * 엔티티는 보관하지 않고 같은 회원이 여러 번 바뀌면 마지막 값만 남는다.
+ */
+@Component
+@RequiredArgsConstructor
+public class UsernameIndexListener implements PostInsertEventListener, PostUpdateEventListener, PostDeleteEventListener {
+
+    private final EntityManagerFactory entityManagerFactory;
+    private final UsernameNgramIndex usernameIndex;
+    private final Map<EventSource, Map<Long, String>> pending = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void register() {
+        EventListenerRegistry registry = entityManagerFactory.unwrap(SessionFactoryImplementor.class)
+                .getServiceRegistry()
+                .getService(EventListenerRegistry.class);
+        registry.appendListeners(EventType.POST_INSERT, this);
+        registry.appendListeners(EventType.POST_UPDATE, this);
+        registry.appendListeners(EventType.POST_DELETE, this);
+    }
+
+    @Override
+    public void onPostInsert(PostInsertEvent event) {
+        if (event.getEntity() instanceof Member) {
+            changesOf(event.getSession()).put((Long) event.getId(), usernameOf(event.getPersister(), event.getState()));
+        }
+    }
+
+    @Override
+    public void onPostUpdate(PostUpdateEvent event) {
+        if (event.getEntity() instanceof Member) {
+            changesOf(event.getSession()).put((Long) event.getId(), usernameOf(event.getPersister(), event.getState()));
+        }
+    }
+
+    @Override
+    public void onPostDelete(PostDeleteEvent event) {
+        if (event.getEntity() instanceof Member) {
+            changesOf(event.getSession()).put((Long) event.getId(), null);
+        }
+    }
+
+    @Override
+    public boolean requiresPostCommitHandling(EntityPersister persister) {
+        return false;
+    }
+
+    //세션마다 처음 한 번만 트랜잭션 완료 후 작업을 등록한다 (롤백이면 버린다)
+    private Map<Long, String> changesOf(EventSource session) {
+        return pending.computeIfAbsent(session, s -> {
+            s.getActionQueue().registerProcess((AfterTransactionCompletionProcess) (success, current) -> {
+                Map<Long, String> changes = pending.remove(s);
+                if (success && changes != null) {
+                    usernameIndex.applyCommitted(changes);
+                }
+            });
+            return new LinkedHashMap<>();
+        });
+    }
+
+    private static String usernameOf(EntityPersister persister, Object[] state) {
+        return (String) state[persister.getPropertyIndex("username")];
+    }
+}
@@ -0,0 +1,247 @@
+package devwooki.study.querydsl.repository;
+
+import com.querydsl.core.Tuple;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import devwooki.study.querydsl.entity.EntityChangedEvent;
+import devwooki.study.querydsl.entity.Member;
+import jakarta.persistence.EntityManager;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.time.Duration;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+import static devwooki.study.querydsl.entity.QMember.member;
+
+/**
+ * Member.username 부분 검색용 메모리 n-gram(trigram) 색인
+ * like '%x%' 는 인덱스를 쓰지 못해 전체 행을 읽으므로, username을 3글자씩 잘라 (gram -> 회원 id) 색인을 만들어 두고
+ * 검색어의 gram들이 모두 들어있는 id만 골라서 Querydsl 쿼리에 member.id in (...) 으로 넘긴다.
+ * 1. 대소문자를 구분하지 않는다.
+ * 2. 아래의 경우는 null을 돌려준다. -> 호출하는 쪽에서 like '%x%' 로 대신 검색한다.
+ *    - 검색어가 3글자보다 짧을 때
+ *    - 결과가 max-ids보다 많을 때 (in 절이 너무 길어진다)
+ *    - 기동 후 색인이 아직 만들어지지 않았을 때
+ *    - 벌크 연산 뒤 전체 재생성이 아직 끝나지 않았을 때 (어떤 행이 바뀌었는지 모른다)
+ *    - 색인을 만든 지 max-staleness가 지났을 때 (재생성이 계속 실패하는 경우)
+ * 3. 커밋된 Member 변경(UsernameIndexListener가 모은 id, username)으로 갱신하고,
+ *    기동 시와 rebuild-interval마다 전체를 다시 만든다. (다른 인스턴스의 변경, 벌크 연산 반영)
+ *    주의 : 다른 인스턴스에서 커밋된 변경은 이벤트가 오지 않으므로 다음 재생성까지 (최대 max-staleness) 검색 결과에서 빠질 수 있다.
+ *          여러 인스턴스에서 바로 보여야 하면 max-staleness를 0으로 두어 색인을 쓰지 않는다. (항상 like)
+ *    전체 재생성은 항상 새 읽기 전용 트랜잭션(REQUIRES_NEW)에서 커밋된 회원만 읽는다.
+ *    벌크 연산 뒤의 재생성은 비동기(@Async)로 실행한다. (호출한 스레드가 전체 회원을 읽는 동안 기다리지 않는다)
+ */
+@Slf4j
+@Component
+public class UsernameNgramIndex {
+
+    static final int GRAM = 3;
+
+    private final EntityManager em;
+    private final TransactionTemplate readOnlyTransaction;
+    private final int maxIds;
+    private final long maxStalenessNanos;
+    private final AtomicLong bulkChanges = new AtomicLong(); //색인에 반영되지 않은 벌크 연산이 있는지 비교하는 용도
+
+    private final Object rebuildLock = new Object();
+    private volatile Index index; //null이면 아직 만들어지지 않음
+    private List<Map<Long, String>> changesDuringRebuild; //전체 재생성 중에 들어온 변경 (다 만든 뒤 다시 반영)
+
+    public UsernameNgramIndex(EntityManager em, PlatformTransactionManager transactionManager,
+                              @Value("${querydsl.username-index.max-ids:1000}") int maxIds,
+                              @Value("${querydsl.username-index.max-staleness:PT15M}") Duration maxStaleness) {
+        this.em = em;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        readOnlyTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        readOnlyTransaction.setReadOnly(true);
+        this.maxIds = maxIds;
+        this.maxStalenessNanos = maxStaleness.toNanos();
+    }
+
+    /**
+     * @return keyword를 포함하는 username을 가진 회원 id, 색인으로 답할 수 없으면 null
+     */
+    public Set<Long> findIdsContaining(String keyword) {
+        Index current = index;
+        if (current == null || keyword == null || keyword.length() < GRAM || !isCurrent(current)) {
+            return null;
+        }
+        String lower = keyword.toLowerCase(Locale.ROOT);
+        List<Set<Long>> postings = new ArrayList<>();
+        for (String gram : grams(lower)) {
+            Set<Long> ids = current.postings.get(gram);
+            if (ids == null) {
+                return Set.of();
+            }
+            postings.add(ids);
+        }
+        //가장 작은 목록의 후보만 실제 username으로 확인한다 (gram이 모두 있어도 순서가 다를 수 있다)
+        postings.sort(Comparator.comparingInt(Set::size));
+        Set<Long> result = new HashSet<>();
+        for (Long id : postings.get(0)) {
+            String username = current.usernames.get(id);
+            if (username != null && username.contains(lower)) {
+                result.add(id);
+                if (result.size() > maxIds) {
+                    return null;
+                }
+            }
+        }
+        return result;
+    }
+
+    private boolean isCurrent(Index current) {
+        return current.bulkChanges == bulkChanges.get() && System.nanoTime() - current.builtAt < maxStalenessNanos;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(initialDelayString = "${querydsl.username-index.rebuild-interval:PT10M}",
+            fixedDelayString = "${querydsl.username-index.rebuild-interval:PT10M}")
+    public void rebuild() {
+        synchronized (rebuildLock) { //전체 재생성은 한 번에 하나씩
+            rebuildIndex();
+        }
+    }
+
+    private void rebuildIndex() {
+        synchronized (this) {
+            changesDuringRebuild = new ArrayList<>();
+        }
+        Index rebuilt = new Index(bulkChanges.get(), System.nanoTime()); //읽기 전에 기록한다 (읽는 도중의 벌크 연산은 다시 만든다)
+        try {
+            readOnlyTransaction.executeWithoutResult(status -> {
+                try (Stream<Tuple> rows = new JPAQueryFactory(em)
+                        .select(member.id, member.username)
+                        .from(member)
+                        .setHint(HibernateHints.HINT_FETCH_SIZE, 1000)
+                        .setHint(HibernateHints.HINT_READ_ONLY, true)
+                        .stream()) {
+                    rows.forEach(row -> rebuilt.put(row.get(member.id), row.get(member.username)));
+                }
+            });
+        } catch (RuntimeException e) {
+            synchronized (this) {
+                changesDuringRebuild = null;
+            }
+            log.warn("Username index rebuild failed, keeping the previous index", e);
+            return;
+        }
+        synchronized (this) {
+            changesDuringRebuild.forEach(changes -> apply(rebuilt, changes));
+            changesDuringRebuild = null;
+            index = rebuilt;
+        }
+        log.info("Username index rebuilt, members={}, grams={}", rebuilt.usernames.size(), rebuilt.postings.size());
+    }
+
+    //벌크 연산은 어떤 행이 바뀌었는지 모르므로 전체를 다시 만든다
+    @Async
+    @EventListener
+    public void onEntityChanged(EntityChangedEvent event) {
+        if (isMemberBulk(event)) {
+            rebuild();
+        }
+    }
+
+    //재생성은 비동기이므로 끝날 때까지 지금 색인을 쓰지 않도록 이벤트를 받은 스레드에서 바로 표시한다
+    @EventListener
+    public void markBulkChanged(EntityChangedEvent event) {
+        if (isMemberBulk(event)) {
+            bulkChanges.incrementAndGet();
+        }
+    }
+
+    private static boolean isMemberBulk(EntityChangedEvent event) {
+        return event.getEntityType() == Member.class && event.contains(EntityChangedEvent.ChangeType.BULK);
+    }
+
+    /**
+     * 커밋된 변경을 반영한다.
+     * @param changes 회원 id -> 바뀐 username (삭제된 회원은 null)
+     */
+    public synchronized void applyCommitted(Map<Long, String> changes) {
+        if (changesDuringRebuild != null) {
+            changesDuringRebuild.add(changes);
+        }
+        if (index != null) {
+            apply(index, changes);
+        }
+    }
+
+    private static void apply(Index target, Map<Long, String> changes) {
+        changes.forEach((id, username) -> {
+            if (username == null) {
+                target.remove(id);
+            } else {
+                target.put(id, username);
+            }
+        });
+    }
+
+    static List<String> grams(String value) {
+        List<String> grams = new ArrayList<>();
+        for (int i = 0; i + GRAM <= value.length(); i++) {
+            grams.add(value.substring(i, i + GRAM));
+        }
+        return grams;
+    }
+
+    //쓰기는 UsernameNgramIndex의 락 안에서만 (또는 아직 공개되기 전에) 일어난다
+    private static final class Index {
+        private final Map<String, Set<Long>> postings = new ConcurrentHashMap<>();
+        private final Map<Long, String> usernames = new ConcurrentHashMap<>();
+        private final long bulkChanges; //만들기 시작할 때의 벌크 연산 수
+        private final long builtAt;     //만들기 시작한 시각 (nanoTime)
+
+        Index(long bulkChanges, long builtAt) {
+            this.bulkChanges = bulkChanges;
+            this.builtAt = builtAt;
+        }
+
+        void put(Long id, String username) {
+            remove(id);
+            if (username == null) {
+                return;
+            }
+            String lower = username.toLowerCase(Locale.ROOT);
+            usernames.put(id, lower);
+            for (String gram : grams(lower)) {
+                postings.computeIfAbsent(gram, g -> ConcurrentHashMap.newKeySet()).add(id);
+            }
+        }
+
+        void remove(Long id) {
+            String previous = usernames.remove(id);
+            if (previous == null) {
+                return;
+            }
+            for (String gram : grams(previous)) {
+                Set<Long> ids = postings.get(gram);
+                if (ids != null) {
+                    ids.remove(id);
+                    if (ids.isEmpty()) {
+                        postings.remove(gram);
+                    }
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package devwooki.study.querydsl.repository;
+
+import com.querydsl.core.types.dsl.BooleanExpression;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import java.util.Set;
+
+import static devwooki.study.querydsl.entity.QMember.member;
+
+/**
+ * 검색 조건의 username 앞부분(usernamePrefix) / 부분(usernameContains) 조건
+ * Member를 검색하는 레포지토리들이 같은 규칙으로 조건을 만들도록 한 곳에 둔다.
+ *
+ * 대소문자 규칙 : prefix, contains 모두 대소문자를 구분하지 않는다.
+ * - SQL은 lower()로 감싸지 않고 username 컬럼의 collation으로 비교한다. (MariaDB 기본 collation은 _ci)
+ *   -> prefix의 like 'x%' 가 username 인덱스를 그대로 쓴다. (lower(username)은 인덱스를 쓰지 못한다)
+ *   -> 테스트용 H2도 IGNORECASE=TRUE로 같은 규칙을 따른다.
+ * - n-gram 색인(UsernameNgramIndex)은 소문자로 바꿔서 색인하므로 같은 결과를 낸다.
+ *
+ * 조회는 contains를, 벌크 update/delete는 containsWithoutIndex를 쓴다.
+ * 색인은 다른 인스턴스의 커밋을 다음 재생성 때(최대 max-staleness 뒤) 반영하므로 그 사이 바뀐 회원이 빠질 수 있다.
+ * 조회에서는 잠깐 빠져 보이는 정도지만, 쓰기에서는 조건에 맞는 행을 조용히 건너뛰게 되므로 항상 DB에서 직접 고른다.
+ */
+@Component
+public class UsernamePredicates {
+
+    private final UsernameNgramIndex usernameIndex;
+
+    public UsernamePredicates(UsernameNgramIndex usernameIndex) {
+        this.usernameIndex = usernameIndex;
+    }
+
+    //username like 'x%'
+    public BooleanExpression startsWith(String prefix) {
+        return StringUtils.hasText(prefix) ? member.username.startsWith(prefix) : null;
+    }
+
+    //n-gram 색인으로 후보 id를 받아서 in 조건으로, 색인으로 답할 수 없으면 like '%x%'
+    public BooleanExpression contains(String keyword) {
+        if (!StringUtils.hasText(keyword)) {
+            return null;
+        }
+        Set<Long> ids = usernameIndex.findIdsContaining(keyword);
+        return ids == null ? member.username.contains(keyword) : member.id.in(ids);
+    }
+
+    //색인을 거치지 않고 항상 like '%x%' (벌크 연산처럼 커밋된 모든 행을 정확히 골라야 하는 곳)
+    public BooleanExpression containsWithoutIndex(String keyword) {
+        return StringUtils.hasText(keyword) ? member.username.contains(keyword) : null;
+    }
+}
@@ -4,6 +4,7 @@ import devwooki.study.querydsl.dto.MemberSearchCondition;
 import devwooki.study.querydsl.dto.MemberTeamDTO;
 import devwooki.study.querydsl.entity.Member;
 import devwooki.study.querydsl.entity.Team;
+import devwooki.study.querydsl.repository.BulkLoadResult;
 import devwooki.study.querydsl.repository.MemberJpaRepository;
 import jakarta.persistence.EntityManager;
 import lombok.extern.slf4j.Slf4j;
@@ -14,6 +15,7 @@ import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.util.List;
+import java.util.stream.IntStream;
 
 import static org.assertj.core.api.Assertions.*;
 
@@ -109,4 +111,18 @@ public class JPAvsQueryDSL {
         Assertions.assertThat(memberTeamDTOS).extracting("username").containsExactly("member4");
     }
 
-}
\ No newline at end of file
+    //대량 저장 : batch insert + 주기적인 flush/clear
+    @Test
+    public void saveAll() throws Exception{
+        List<Member> members = IntStream.range(0, 1000)
+                .mapToObj(i -> new Member("bulk" + i, i % 100))
+                .toList();
+
+        BulkLoadResult result = jpaRepository.saveAll(members);
+        log.info("saveAll result = {}, rows/s = {}", result, result.getRowsPerSecond());
+
+        assertThat(result.getRows()).isEqualTo(1000);
+        assertThat(jpaRepository.findAll_DSL()).hasSize(1000);
+    }
+
+}
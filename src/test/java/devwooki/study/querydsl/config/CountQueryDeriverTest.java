@@ -0,0 +1,90 @@
+package devwooki.study.querydsl.config;
+
+import com.querydsl.jpa.impl.JPAQuery;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import devwooki.study.querydsl.entity.Member;
+import devwooki.study.querydsl.entity.Team;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.annotation.Transactional;
+
+import static devwooki.study.querydsl.entity.QMember.member;
+import static devwooki.study.querydsl.entity.QTeam.team;
+import static org.assertj.core.api.Assertions.assertThat;
+
+//만들어진 count가 content 쿼리의 결과 건수와 같은지 확인한다
+@SpringBootTest
+@Transactional
+class CountQueryDeriverTest {
+
+    @Autowired
+    EntityManager em;
+
+    JPAQueryFactory queryFactory;
+
+    @BeforeEach
+    public void before() {
+        queryFactory = new JPAQueryFactory(em);
+        Team teamA = new Team("A팀");
+        Team teamB = new Team("B팀");
+        Team teamC = new Team("C팀"); //회원 없음
+        em.persist(teamA);
+        em.persist(teamB);
+        em.persist(teamC);
+
+        em.persist(new Member("member1", 10, teamA));
+        em.persist(new Member("member2", 20, teamA));
+        em.persist(new Member("member3", 30, teamB));
+        em.persist(new Member("member4", 40, teamB));
+        em.flush();
+        em.clear();
+    }
+
+    //참조하지 않는 컬렉션 left fetch join은 빠진다 -> 회원 수가 아니라 팀 수를 센다
+    @Test
+    public void 컬렉션_fetch_join() throws Exception {
+        JPAQuery<Team> content = queryFactory
+                .selectFrom(team)
+                .leftJoin(team.members, member).fetchJoin();
+
+        assertThat(countOf(content)).isEqualTo(3).isEqualTo(content.fetch().size());
+    }
+
+    //조건에서 참조하는 컬렉션 fetch join은 남는다 -> 팀을 중복 없이 센다
+    @Test
+    public void 조건에서_참조하는_컬렉션_fetch_join() throws Exception {
+        JPAQuery<Team> content = queryFactory
+                .selectFrom(team)
+                .join(team.members, member).fetchJoin()
+                .where(member.age.goe(20));
+
+        assertThat(countOf(content)).isEqualTo(2).isEqualTo(content.fetch().size()); //A팀(member2), B팀(member3, member4)
+    }
+
+    //inner join은 회원이 없는 팀을 걸러내므로 참조하지 않아도 남는다
+    @Test
+    public void 컬렉션_inner_fetch_join() throws Exception {
+        JPAQuery<Team> content = queryFactory
+                .selectFrom(team)
+                .join(team.members, member).fetchJoin();
+
+        assertThat(countOf(content)).isEqualTo(2).isEqualTo(content.fetch().size());
+    }
+
+    @Test
+    public void to_one_fetch_join() throws Exception {
+        JPAQuery<Member> content = queryFactory
+                .selectFrom(member)
+                .leftJoin(member.team, team).fetchJoin()
+                .orderBy(member.age.desc());
+
+        assertThat(countOf(content)).isEqualTo(4).isEqualTo(content.fetch().size());
+    }
+
+    private long countOf(JPAQuery<?> content) {
+        return CountQueryDeriver.derive(em, content).getAsLong();
+    }
+}
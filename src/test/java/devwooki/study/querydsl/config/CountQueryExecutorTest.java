@@ -0,0 +1,128 @@
+package devwooki.study.querydsl.config;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 스레드 하나짜리 실행기로 풀 고갈(대기열 가득), 커넥션을 얻지 못한 count, 취소를 흉내낸다.
+ * 커넥션 풀 고갈은 gate가 열릴 때까지 커넥션을 주지 않는 DataSource로 만든다.
+ */
+class CountQueryExecutorTest {
+
+    @Test
+    public void 대기열이_가득_차면_호출한_스레드에서_센다() throws Exception {
+        CountQueryExecutor executor = executor(h2(), Duration.ofSeconds(10), 0);
+        CountDownLatch running = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CountQueryExecutor.PendingCount busy = executor.submit(() -> {
+            running.countDown();
+            awaitQuietly(release);
+            return 1L;
+        });
+        assertThat(running.await(10, TimeUnit.SECONDS)).isTrue();
+
+        AtomicReference<Thread> countedOn = new AtomicReference<>();
+        CountQueryExecutor.PendingCount rejected = executor.submit(() -> {
+            countedOn.set(Thread.currentThread());
+            return 2L;
+        });
+
+        assertThat(rejected.await()).isEqualTo(2);
+        assertThat(countedOn.get()).isSameAs(Thread.currentThread());
+        release.countDown();
+        assertThat(busy.await()).isEqualTo(1);
+        executor.shutdown();
+    }
+
+    @Test
+    public void 시작하지_못하면_호출한_스레드에서_한번만_센다() throws Exception {
+        CountDownLatch gate = new CountDownLatch(1);
+        CountQueryExecutor executor = executor(gated(gate), Duration.ofMillis(200), 10);
+        AtomicInteger counted = new AtomicInteger();
+        AtomicReference<Thread> countedOn = new AtomicReference<>();
+
+        long total = executor.submit(() -> {
+            counted.incrementAndGet();
+            countedOn.set(Thread.currentThread());
+            return 3L;
+        }).await();
+
+        assertThat(total).isEqualTo(3);
+        assertThat(countedOn.get()).isSameAs(Thread.currentThread());
+
+        //취소된 작업이 그 뒤에 커넥션을 얻어도 세지 않는다 (스레드가 하나라서 다음 작업은 앞의 작업이 끝난 뒤 실행된다)
+        gate.countDown();
+        assertNextRunsOnPool(executor);
+        assertThat(counted.get()).isEqualTo(1);
+        executor.shutdown();
+    }
+
+    @Test
+    public void 취소하면_나중에_커넥션을_얻어도_세지_않는다() throws Exception {
+        CountDownLatch gate = new CountDownLatch(1);
+        CountQueryExecutor executor = executor(gated(gate), Duration.ofSeconds(10), 10);
+        AtomicInteger counted = new AtomicInteger();
+
+        executor.submit(() -> counted.incrementAndGet()).cancel();
+        gate.countDown();
+
+        assertNextRunsOnPool(executor);
+        assertThat(counted.get()).isZero();
+        executor.shutdown();
+    }
+
+    private static void assertNextRunsOnPool(CountQueryExecutor executor) {
+        AtomicReference<Thread> countedOn = new AtomicReference<>();
+        long total = executor.submit(() -> {
+            countedOn.set(Thread.currentThread());
+            return 4L;
+        }).await();
+
+        assertThat(total).isEqualTo(4);
+        assertThat(countedOn.get().getName()).startsWith("count-query-");
+    }
+
+    private static CountQueryExecutor executor(DataSource dataSource, Duration startTimeout, int queueCapacity) {
+        return new CountQueryExecutor(new DataSourceTransactionManager(dataSource), 1, queueCapacity,
+                startTimeout, Duration.ofSeconds(10), false);
+    }
+
+    private static DataSource h2() {
+        return new DriverManagerDataSource("jdbc:h2:mem:count-" + System.nanoTime() + ";DB_CLOSE_DELAY=-1", "sa", "");
+    }
+
+    //gate가 열릴 때까지 커넥션을 주지 않는다. 커넥션 풀처럼 인터럽트(Future.cancel)되어도 계속 기다린다
+    private static DataSource gated(CountDownLatch gate) {
+        return new DelegatingDataSource(h2()) {
+            @Override
+            public Connection getConnection() throws SQLException {
+                awaitQuietly(gate);
+                return super.getConnection();
+            }
+        };
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        while (true) {
+            try {
+                latch.await();
+                return;
+            } catch (InterruptedException ignored) {
+                //취소되어도 기다린다
+            }
+        }
+    }
+}
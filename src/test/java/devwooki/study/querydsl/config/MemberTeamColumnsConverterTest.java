@@ -0,0 +1,42 @@
+package devwooki.study.querydsl.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import devwooki.study.querydsl.dto.MemberTeamColumns;
+import devwooki.study.querydsl.dto.MemberTeamDTO;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 응답 크기 비교 : 기존 JSON(List<MemberTeamDTO>) > 컬럼 JSON > 컬럼 CBOR (시간은 WireFormatBenchmark)
+ */
+class MemberTeamColumnsConverterTest {
+
+    MemberTeamColumnsConverter converter = new MemberTeamColumnsConverter();
+
+    @Test
+    public void 컬럼_포맷이_행_JSON보다_작다() throws Exception {
+        int rows = 1000;
+        List<MemberTeamDTO> dtos = new ArrayList<>(rows);
+        MemberTeamColumns columns = new MemberTeamColumns(rows);
+        for (int i = 0; i < rows; i++) {
+            MemberTeamDTO dto = new MemberTeamDTO((long) i, "member" + i, i % 100, (long) (i % 10), "team" + (i % 10));
+            dtos.add(dto);
+            columns.add(dto);
+        }
+
+        ByteArrayOutputStream json = new ByteArrayOutputStream();
+        new ObjectMapper().writeValue(json, dtos);
+        ByteArrayOutputStream columnsJson = new ByteArrayOutputStream();
+        converter.write(columns, columnsJson, false);
+        ByteArrayOutputStream columnsCbor = new ByteArrayOutputStream();
+        converter.write(columns, columnsCbor, true);
+
+        assertThat(columnsJson.size()).isLessThan(json.size());
+        assertThat(columnsCbor.size()).isLessThan(columnsJson.size());
+    }
+}
@@ -0,0 +1,258 @@
+package devwooki.study.querydsl.config;
+
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.orm.jpa.JpaTransactionManager;
+import org.springframework.orm.jpa.LocalContainerEntityManagerFactoryBean;
+import org.springframework.orm.jpa.SharedEntityManagerCreator;
+import org.springframework.orm.jpa.vendor.HibernateJpaVendorAdapter;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.Cookie;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 내장 H2 두 개를 primary / replica로 두고, 각 DB에 자기 이름을 넣어서 어느 쪽에서 읽었는지 확인한다.
+ * 쓰기 직후 primary로 보내는 기준은 요청 속성과 쿠키(LastWriteFilter)이므로 필터를 거쳐 쿠키를 주고받는 Client로 요청을 흉내낸다.
+ */
+class ReplicationRoutingDataSourceTest {
+
+    @Test
+    public void readOnly_트랜잭션은_replica() throws Exception {
+        Routing routing = new Routing(Duration.ZERO);
+
+        assertThat(routing.read(true)).isEqualTo("replica");
+        assertThat(routing.read(false)).isEqualTo("primary");
+    }
+
+    @Test
+    public void onPrimary_안에서는_readOnly도_primary() throws Exception {
+        Routing routing = new Routing(Duration.ZERO);
+
+        String node = ReplicationRoutingDataSource.onPrimary(() -> routing.read(true));
+
+        assertThat(node).isEqualTo("primary");
+        assertThat(routing.read(true)).isEqualTo("replica");
+    }
+
+    @Test
+    public void 쓰기_커밋_후에는_같은_클라이언트만_lagTolerance_동안_primary() throws Exception {
+        Routing routing = new Routing(Duration.ofMinutes(1));
+        Client client = new Client();
+        assertThat(client.request(() -> routing.read(true))).isEqualTo("replica");
+
+        client.request(() -> routing.write(false));
+
+        assertThat(client.request(() -> routing.read(true))).isEqualTo("primary");
+        assertThat(new Client().request(() -> routing.read(true))).isEqualTo("replica");
+        assertThat(routing.read(true)).isEqualTo("replica"); //요청 밖 (스레드에 남지 않는다)
+        assertThat(client.sessionCreated).isFalse();
+    }
+
+    @Test
+    public void 같은_요청_안에서는_쓰기_커밋_후_primary() throws Exception {
+        Routing routing = new Routing(Duration.ofMinutes(1));
+
+        String node = new Client().request(() -> {
+            routing.write(false);
+            return routing.read(true);
+        });
+
+        assertThat(node).isEqualTo("primary");
+    }
+
+    @Test
+    public void 다른_인스턴스도_쿠키를_보고_primary() throws Exception {
+        Routing instanceA = new Routing(Duration.ofMinutes(1));
+        Routing instanceB = new Routing(Duration.ofMinutes(1));
+        Client client = new Client();
+
+        client.request(() -> instanceA.write(false));
+
+        assertThat(client.request(() -> instanceB.read(true))).isEqualTo("primary");
+    }
+
+    @Test
+    public void lagTolerance가_지난_쿠키는_무시한다() throws Exception {
+        Routing routing = new Routing(Duration.ofSeconds(1));
+        Client client = new Client();
+        client.cookies = new Cookie[]{new Cookie(LastWriteFilter.LAST_WRITE_COOKIE,
+                Long.toString(System.currentTimeMillis() - 60_000))};
+
+        assertThat(client.request(() -> routing.read(true))).isEqualTo("replica");
+    }
+
+    //스트리밍 응답처럼 헤더가 이미 나간 뒤의 쓰기
+    @Test
+    public void 응답이_커밋된_뒤의_쓰기는_쿠키없이_그_요청_안에서만_primary() throws Exception {
+        Routing routing = new Routing(Duration.ofMinutes(1));
+        Client client = new Client();
+        client.responseCommitted = true;
+
+        String node = client.request(() -> {
+            routing.write(false);
+            return routing.read(true);
+        });
+
+        assertThat(node).isEqualTo("primary");
+        assertThat(client.cookies).isEmpty();
+        client.responseCommitted = false;
+        assertThat(client.request(() -> routing.read(true))).isEqualTo("replica");
+    }
+
+    @Test
+    public void 롤백된_쓰기는_primary로_보내지_않는다() throws Exception {
+        Routing routing = new Routing(Duration.ofMinutes(1));
+        Client client = new Client();
+
+        client.request(() -> routing.write(true));
+
+        assertThat(client.request(() -> routing.read(true))).isEqualTo("replica");
+    }
+
+    @Test
+    public void JPA_쓰기_커밋_후에는_같은_클라이언트만_primary() throws Exception {
+        Jpa jpa = new Jpa(Duration.ofMinutes(1));
+        Client client = new Client();
+        assertThat(client.request(() -> jpa.read(true))).isEqualTo("replica");
+
+        client.request(jpa::write);
+
+        assertThat(client.request(() -> jpa.read(true))).isEqualTo("primary");
+        assertThat(new Client().request(() -> jpa.read(true))).isEqualTo("replica");
+        jpa.close();
+    }
+
+    //LastWriteFilter를 거쳐 요청을 처리하고, 응답으로 받은 쿠키를 다음 요청에 보낸다
+    private static class Client {
+        private static final LastWriteFilter FILTER = new LastWriteFilter(Duration.ofMinutes(1));
+
+        private Cookie[] cookies = new Cookie[0];
+        private boolean sessionCreated;
+        private boolean responseCommitted;
+
+        <T> T request(Supplier<T> action) {
+            MockHttpServletRequest request = new MockHttpServletRequest();
+            request.setCookies(cookies);
+            MockHttpServletResponse response = new MockHttpServletResponse();
+            response.setCommitted(responseCommitted);
+            AtomicReference<T> result = new AtomicReference<>();
+            try {
+                FILTER.doFilter(request, response, (req, res) -> {
+                    ServletRequestAttributes attributes = new ServletRequestAttributes(request, response);
+                    RequestContextHolder.setRequestAttributes(attributes);
+                    try {
+                        result.set(action.get());
+                    } finally {
+                        attributes.requestCompleted();
+                        RequestContextHolder.resetRequestAttributes();
+                    }
+                });
+            } catch (ServletException | IOException e) {
+                throw new IllegalStateException(e);
+            }
+            sessionCreated |= request.getSession(false) != null;
+            if (response.getCookies().length > 0) {
+                cookies = response.getCookies();
+            }
+            return result.get();
+        }
+    }
+
+    private static DataSource routing(Duration lagTolerance) {
+        return new LazyConnectionDataSourceProxy(
+                new ReplicationRoutingDataSource(node("primary"), node("replica"), lagTolerance));
+    }
+
+    private static DataSource node(String name) {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(
+                "jdbc:h2:mem:" + name + "-" + System.nanoTime() + ";DB_CLOSE_DELAY=-1", "sa", "");
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute("create table node(name varchar(20))");
+        jdbcTemplate.execute("create table written(id int)");
+        jdbcTemplate.update("insert into node values (?)", name);
+        return dataSource;
+    }
+
+    private static TransactionTemplate transaction(PlatformTransactionManager transactionManager, boolean readOnly) {
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+        tx.setReadOnly(readOnly);
+        return tx;
+    }
+
+    private static class Routing {
+        private final JdbcTemplate jdbcTemplate;
+        private final DataSourceTransactionManager transactionManager;
+
+        Routing(Duration lagTolerance) {
+            DataSource dataSource = routing(lagTolerance);
+            this.jdbcTemplate = new JdbcTemplate(dataSource);
+            this.transactionManager = new DataSourceTransactionManager(dataSource);
+        }
+
+        String read(boolean readOnly) {
+            return transaction(transactionManager, readOnly)
+                    .execute(status -> jdbcTemplate.queryForObject("select name from node", String.class));
+        }
+
+        Void write(boolean rollback) {
+            return transaction(transactionManager, false).execute(status -> {
+                jdbcTemplate.update("insert into written values (1)");
+                if (rollback) {
+                    status.setRollbackOnly();
+                }
+                return null;
+            });
+        }
+    }
+
+    //JpaTransactionManager는 트랜잭션 동기화 정보를 설정하기 전에 커넥션을 요청하므로 따로 확인한다
+    private static class Jpa {
+        private final LocalContainerEntityManagerFactoryBean factory;
+        private final EntityManager em;
+        private final JpaTransactionManager transactionManager;
+
+        Jpa(Duration lagTolerance) {
+            factory = new LocalContainerEntityManagerFactoryBean();
+            factory.setDataSource(routing(lagTolerance));
+            factory.setPackagesToScan(ReplicationRoutingDataSourceTest.class.getPackageName()); //엔티티 없음, 네이티브 쿼리만 사용
+            factory.setJpaVendorAdapter(new HibernateJpaVendorAdapter());
+            factory.setJpaPropertyMap(Map.of("hibernate.hbm2ddl.auto", "none"));
+            factory.afterPropertiesSet();
+            this.em = SharedEntityManagerCreator.createSharedEntityManager(factory.getObject());
+            this.transactionManager = new JpaTransactionManager(factory.getObject());
+        }
+
+        String read(boolean readOnly) {
+            return transaction(transactionManager, readOnly)
+                    .execute(status -> (String) em.createNativeQuery("select name from node").getSingleResult());
+        }
+
+        Integer write() {
+            return transaction(transactionManager, false)
+                    .execute(status -> em.createNativeQuery("insert into written values (1)").executeUpdate());
+        }
+
+        void close() {
+            factory.destroy();
+        }
+    }
+}
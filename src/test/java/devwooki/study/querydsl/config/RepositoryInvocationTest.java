@@ -0,0 +1,45 @@
+package devwooki.study.querydsl.config;
+
+import devwooki.study.querydsl.dto.MemberSearchCondition;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RepositoryInvocationTest {
+
+    @Test
+    public void 안쪽_메서드는_바깥_메서드의_조건을_이어받는다() throws Exception {
+        MemberSearchCondition condition = new MemberSearchCondition();
+        RepositoryInvocation outer = RepositoryInvocation.enter("MemberRepositoryImpl.search", condition);
+        RepositoryInvocation inner = RepositoryInvocation.enter("MemberJpaRepository.searchWhere", null);
+
+        assertThat(RepositoryInvocation.current().getMethod()).isEqualTo("MemberJpaRepository.searchWhere");
+        assertThat(RepositoryInvocation.current().getCondition()).isSameAs(condition);
+
+        inner.exit();
+        assertThat(RepositoryInvocation.current()).isSameAs(outer);
+        outer.exit();
+        assertThat(RepositoryInvocation.current()).isNull();
+    }
+
+    @Test
+    public void 호출정보를_다른_스레드로_넘긴다() throws Exception {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        MemberSearchCondition condition = new MemberSearchCondition();
+        RepositoryInvocation invocation = RepositoryInvocation.enter("MemberRepositoryImpl.searchPageConcurrent", condition);
+        try {
+            Callable<String> task = RepositoryInvocation.propagate(() -> RepositoryInvocation.current().getMethod());
+            assertThat(executor.submit(task).get()).isEqualTo("MemberRepositoryImpl.searchPageConcurrent");
+            //작업이 끝나면 실행한 스레드에는 호출 정보가 남지 않는다
+            assertThat(executor.submit(RepositoryInvocation::current).get()).isNull();
+        } finally {
+            invocation.exit();
+            executor.shutdown();
+        }
+        assertThat(RepositoryInvocation.current()).isNull();
+    }
+}
@@ -0,0 +1,112 @@
+package devwooki.study.querydsl.config;
+
+import devwooki.study.querydsl.dto.MemberSearchCondition;
+import devwooki.study.querydsl.entity.Member;
+import devwooki.study.querydsl.entity.Team;
+import devwooki.study.querydsl.repository.MemberJpaRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.annotation.Transactional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * 레지스트리는 테스트 컨텍스트가 공유하므로 호출 전후의 차이로 확인한다.
+ */
+@SpringBootTest
+@Transactional
+class RepositoryMetricsAspectTest {
+
+    @Autowired
+    EntityManager em;
+    @Autowired
+    MeterRegistry registry;
+    @Autowired
+    MemberJpaRepository memberJpaRepository;
+
+    @BeforeEach
+    public void before() {
+        Team teamA = new Team("A팀");
+        em.persist(teamA);
+        em.persist(new Member("metric1", 10, teamA));
+        em.persist(new Member("metric2", 20, teamA));
+        em.persist(new Member("metric3", 30, teamA));
+        em.flush();
+        em.clear();
+    }
+
+    @Test
+    public void 실행시간_호출수_행수를_남긴다() throws Exception {
+        String method = "MemberJpaRepository.searchWhere";
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setUsernamePrefix("metric");
+        condition.setAgeGoe(20);
+        long timed = timerCount(method, "success");
+        long called = calls(method, "usernamePrefix,ageGoe", "success");
+        double rows = rows(method, "usernamePrefix,ageGoe");
+
+        memberJpaRepository.searchWhere(condition);
+
+        assertThat(timerCount(method, "success")).isEqualTo(timed + 1);
+        assertThat(calls(method, "usernamePrefix,ageGoe", "success")).isEqualTo(called + 1);
+        assertThat(rows(method, "usernamePrefix,ageGoe")).isEqualTo(rows + 2);
+    }
+
+    //히스토그램 타이머에는 condition 태그가 없다 (태그 조합 x 버킷 수만큼 시계열이 늘어난다)
+    @Test
+    public void 히스토그램_타이머에는_조건_태그를_붙이지_않는다() throws Exception {
+        memberJpaRepository.searchWhere(new MemberSearchCondition());
+
+        assertThat(registry.find("repository.invocations").timers())
+                .isNotEmpty()
+                .allSatisfy(timer -> assertThat(timer.getId().getTag("condition")).isNull());
+    }
+
+    @Test
+    public void 예외를_남긴다() throws Exception {
+        String method = "MemberJpaRepository.findById";
+        long timed = timerCount(method, "error");
+        long called = calls(method, "n/a", "error");
+        double errors = errors(method);
+
+        //id 없이 조회 -> IllegalArgumentException (@Repository 예외 변환 뒤에는 InvalidDataAccessApiUsageException)
+        assertThatThrownBy(() -> memberJpaRepository.findById(null))
+                .isInstanceOf(RuntimeException.class);
+
+        assertThat(timerCount(method, "error")).isEqualTo(timed + 1);
+        assertThat(calls(method, "n/a", "error")).isEqualTo(called + 1);
+        assertThat(errors(method)).isEqualTo(errors + 1);
+    }
+
+    private long timerCount(String method, String outcome) {
+        Timer timer = registry.find("repository.invocations").tags("method", method, "outcome", outcome).timer();
+        return timer == null ? 0 : timer.count();
+    }
+
+    private long calls(String method, String condition, String outcome) {
+        Counter counter = registry.find("repository.calls")
+                .tags("method", method, "condition", condition, "outcome", outcome).counter();
+        return counter == null ? 0 : (long) counter.count();
+    }
+
+    private double rows(String method, String condition) {
+        DistributionSummary summary = registry.find("repository.rows")
+                .tags("method", method, "condition", condition).summary();
+        return summary == null ? 0 : summary.totalAmount();
+    }
+
+    //exception 태그와 상관없이 합한다
+    private double errors(String method) {
+        return registry.find("repository.errors").tags("method", method).counters().stream()
+                .mapToDouble(Counter::count)
+                .sum();
+    }
+}
@@ -0,0 +1,106 @@
+package devwooki.study.querydsl.config;
+
+import devwooki.study.querydsl.dto.MemberSearchCondition;
+import devwooki.study.querydsl.dto.MemberTeamColumns;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SearchResultCacheTest {
+
+    SearchResultCache cache = new SearchResultCache(new SimpleMeterRegistry(), 100,
+            Duration.ofMinutes(5), Duration.ofMinutes(1));
+
+    @Test
+    public void 같은_조건은_한번만_조회() throws Exception {
+        AtomicInteger loads = new AtomicInteger();
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setTeamName("teamA");
+
+        for (int i = 0; i < 3; i++) {
+            cache.get("searchWhere", List.of(condition.normalize(), PageRequest.of(0, 10)),
+                    () -> loads.incrementAndGet());
+        }
+        Integer other = cache.get("searchWhere", List.of(condition.normalize(), PageRequest.of(1, 10)),
+                () -> loads.incrementAndGet());
+
+        assertThat(loads.get()).isEqualTo(2);
+        assertThat(other).isEqualTo(2);
+    }
+
+    @Test
+    public void 변경되면_다시_조회() throws Exception {
+        AtomicInteger loads = new AtomicInteger();
+        MemberSearchCondition condition = new MemberSearchCondition();
+
+        cache.get("searchWhere", List.of(condition.normalize()), () -> loads.incrementAndGet());
+        cache.invalidateAll();
+        Integer reloaded = cache.get("searchWhere", List.of(condition.normalize()), () -> loads.incrementAndGet());
+
+        assertThat(reloaded).isEqualTo(2);
+    }
+
+    @Test
+    public void 조회_도중_변경되면_그_결과는_다시_나가지_않는다() throws Exception {
+        AtomicInteger loads = new AtomicInteger();
+        List<?> key = List.of(new MemberSearchCondition().normalize());
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch changed = new CountDownLatch(1);
+
+        CompletableFuture<Integer> stale = CompletableFuture.supplyAsync(() -> cache.get("searchWhere", key, () -> {
+            loading.countDown();
+            try {
+                changed.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return loads.incrementAndGet();
+        }));
+        loading.await(5, TimeUnit.SECONDS);
+        cache.invalidateAll(); //조회가 끝나기 전에 변경
+        changed.countDown();
+
+        assertThat(stale.get(5, TimeUnit.SECONDS)).isEqualTo(1);
+        Integer reloaded = cache.get("searchWhere", key, () -> loads.incrementAndGet());
+        assertThat(reloaded).isEqualTo(2);
+    }
+
+    @Test
+    public void 버전은_값을_조회할_때의_버전() throws Exception {
+        AtomicReference<String> version = new AtomicReference<>("v1");
+        List<?> key = List.of(new MemberSearchCondition().normalize());
+
+        cache.versioned("searchWhere", key, version::get, () -> 1);
+        version.set("v2"); //캐시가 비워지기 전에 버전만 먼저 바뀐 경우
+        SearchResultCache.Versioned<Integer> cached = cache.versioned("searchWhere", key, version::get, () -> 2);
+        cache.invalidateAll();
+        SearchResultCache.Versioned<Integer> reloaded = cache.versioned("searchWhere", key, version::get, () -> 2);
+
+        assertThat(cached).isEqualTo(new SearchResultCache.Versioned<>(1, "v1"));
+        assertThat(reloaded).isEqualTo(new SearchResultCache.Versioned<>(2, "v2"));
+    }
+
+    @Test
+    public void 크기는_행_수로_센다() throws Exception {
+        MemberTeamColumns columns = new MemberTeamColumns(3);
+        for (long id = 1; id <= 3; id++) {
+            columns.add(id, "member" + id, 20, 1L, "teamA");
+        }
+
+        assertThat(SearchResultCache.weigh(columns)).isEqualTo(3);
+        assertThat(SearchResultCache.weigh(List.of(1, 2))).isEqualTo(2);
+        assertThat(SearchResultCache.weigh(new PageImpl<>(List.of(1, 2), PageRequest.of(0, 2), 100))).isEqualTo(2);
+        assertThat(SearchResultCache.weigh(List.of())).isEqualTo(1);
+    }
+}
@@ -0,0 +1,33 @@
+package devwooki.study.querydsl.config;
+
+import org.junit.jupiter.api.Test;
+
+import javax.cache.CacheManager;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SecondLevelCacheConfigTest {
+
+    SecondLevelCacheConfig config = new SecondLevelCacheConfig();
+
+    //테스트 컨텍스트가 여러 개 떠 있을 때 하나를 닫아도 나머지의 2차 캐시는 그대로여야 한다
+    @Test
+    public void 컨텍스트마다_따로_닫힌다() throws Exception {
+        SecondLevelCacheConfig.SecondLevelCacheProperties properties = new SecondLevelCacheConfig.SecondLevelCacheProperties();
+        properties.getRegions().put("team", new SecondLevelCacheConfig.Region());
+
+        CacheManager first = config.hibernateCacheManager(properties);
+        CacheManager second = config.hibernateCacheManager(properties);
+        try {
+            assertThat(first).isNotSameAs(second);
+
+            first.close();
+
+            assertThat(first.isClosed()).isTrue();
+            assertThat(second.isClosed()).isFalse();
+            assertThat(second.getCache("team")).isNotNull();
+        } finally {
+            second.close();
+        }
+    }
+}
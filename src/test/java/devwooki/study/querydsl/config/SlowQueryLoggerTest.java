@@ -0,0 +1,74 @@
+package devwooki.study.querydsl.config;
+
+import devwooki.study.querydsl.dto.MemberSearchCondition;
+import devwooki.study.querydsl.entity.Member;
+import devwooki.study.querydsl.entity.Team;
+import devwooki.study.querydsl.repository.MemberJpaRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+//모든 SQL이 느린 쿼리로 잡히도록 threshold를 0으로 둔다
+@SpringBootTest(properties = {
+        "querydsl.slow-query.threshold=0ms",
+        "querydsl.slow-query.explain=true"
+})
+@Transactional
+class SlowQueryLoggerTest {
+
+    @Autowired
+    EntityManager em;
+    @Autowired
+    MeterRegistry registry;
+    @Autowired
+    MemberJpaRepository memberJpaRepository;
+
+    @BeforeEach
+    public void before() {
+        Team teamA = new Team("A팀");
+        em.persist(teamA);
+        em.persist(new Member("member1", 10, teamA));
+        em.persist(new Member("member2", 20, teamA));
+        em.flush();
+        em.clear();
+    }
+
+    @Test
+    public void 느린_쿼리에_레포지토리_메서드와_조건이_남는다() throws Exception {
+        double before = slowQueries("MemberJpaRepository.searchWhere", "teamName,ageGoe");
+
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setTeamName("A팀");
+        condition.setAgeGoe(15);
+        assertThat(memberJpaRepository.searchWhere(condition)).extracting("username").containsExactly("member2");
+
+        assertThat(slowQueries("MemberJpaRepository.searchWhere", "teamName,ageGoe")).isEqualTo(before + 1);
+    }
+
+    //EXPLAIN은 다른 커넥션에서 실행되므로 스트리밍 중인 결과를 방해하지 않는다
+    @Test
+    public void 스트리밍_조회도_느린_쿼리로_남는다() throws Exception {
+        double before = slowQueries("MemberJpaRepository.streamWhere", "none");
+        List<String> usernames = new ArrayList<>();
+
+        memberJpaRepository.streamWhere(new MemberSearchCondition(), 1, row -> usernames.add(row.getUsername()));
+
+        assertThat(usernames).contains("member1", "member2");
+        assertThat(slowQueries("MemberJpaRepository.streamWhere", "none")).isGreaterThan(before);
+    }
+
+    private double slowQueries(String method, String condition) {
+        Counter counter = registry.find("repository.slow-queries").tag("method", method).tag("condition", condition).counter();
+        return counter == null ? 0 : counter.count();
+    }
+}
@@ -0,0 +1,102 @@
+package devwooki.study.querydsl.config;
+
+import devwooki.study.querydsl.dto.MemberSearchCondition;
+import devwooki.study.querydsl.entity.Member;
+import devwooki.study.querydsl.entity.Team;
+import devwooki.study.querydsl.repository.AssociationBatchLoader;
+import devwooki.study.querydsl.repository.MemberJpaRepository;
+import com.p6spy.engine.common.StatementInformation;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+
+import static devwooki.study.querydsl.support.SqlStatementAssertions.assertMaxStatements;
+import static devwooki.study.querydsl.support.SqlStatementAssertions.capture;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@SpringBootTest
+@Transactional
+class SqlStatementCounterTest {
+
+    @Autowired
+    EntityManager em;
+    @Autowired
+    SqlStatementCounter counter;
+    @Autowired
+    MemberJpaRepository memberJpaRepository;
+    @Autowired
+    AssociationBatchLoader associationLoader;
+
+    @BeforeEach
+    public void before() {
+        Team teamA = new Team("A팀");
+        Team teamB = new Team("B팀");
+        em.persist(teamA);
+        em.persist(teamB);
+
+        em.persist(new Member("member1", 10, teamA));
+        em.persist(new Member("member2", 20, teamA));
+        em.persist(new Member("member3", 30, teamB));
+        em.persist(new Member("member4", 40, teamB));
+        em.flush();
+        em.clear();
+    }
+
+    @Test
+    public void DTO조회는_쿼리_한번() throws Exception {
+        assertMaxStatements(counter, 1, () -> memberJpaRepository.searchWhere(new MemberSearchCondition()));
+    }
+
+    //fetch join 없이 엔티티를 조회하고 team에 접근하면 팀 수만큼 select가 추가로 나간다 (N+1)
+    @Test
+    public void 지연로딩_N플러스1() throws Exception {
+        StatementScope scope = capture(counter, () -> {
+            List<Member> members = memberJpaRepository.findAll_DSL();
+            members.forEach(m -> m.getTeam().getName());
+        });
+
+        assertThat(scope.getTotal()).isEqualTo(1 + 2);
+        assertThat(scope.getCounts().values()).contains(2); //같은 팀 조회 템플릿이 2번
+    }
+
+    //searchWhereMember는 AssociationBatchLoader로 팀을 한 번에 로딩한다
+    @Test
+    public void 지연로딩_일괄로딩() throws Exception {
+        assertMaxStatements(counter, 2, () -> {
+            List<Member> members = memberJpaRepository.searchWhereMember(new MemberSearchCondition());
+            members.forEach(m -> m.getTeam().getName());
+        });
+    }
+
+    @Test
+    public void 팀_컬렉션_일괄로딩() throws Exception {
+        assertMaxStatements(counter, 2, () -> {
+            List<Team> teams = associationLoader.loadMembers(
+                    em.createQuery("select t from Team t", Team.class).getResultList());
+            teams.forEach(t -> assertThat(t.getMembers()).hasSize(2));
+        });
+    }
+
+    //요청 스코프 안에서도 트랜잭션(이 테스트의 트랜잭션)은 자기 스코프로 따로 센다
+    @Test
+    public void 요청_안의_트랜잭션도_따로_센다() throws Exception {
+        SqlStatementCounter budget = new SqlStatementCounter(2, "fail");
+        StatementInformation statement = new StatementInformation(null);
+        statement.setStatementQuery("select m from member m where m.id = ?");
+
+        try (StatementScope ignored = budget.open("GET /v1/members")) {
+            budget.onAfterAnyExecute(statement, 0, null);
+            budget.onAfterAnyExecute(statement, 0, null);
+
+            assertThatThrownBy(() -> budget.onAfterAnyExecute(statement, 0, null))
+                    .isInstanceOf(StatementBudgetExceededException.class)
+                    .hasMessageContaining("[transaction ");
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package devwooki.study.querydsl.config;
+
+import devwooki.study.querydsl.entity.EntityChangedEvent;
+import devwooki.study.querydsl.entity.Member;
+import devwooki.study.querydsl.entity.Team;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.PageRequest;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TableVersionsTest {
+
+    TableVersions tableVersions = new TableVersions();
+    List<Class<?>> tables = List.of(Member.class, Team.class);
+
+    @Test
+    public void 변경이_없으면_같은_ETag() throws Exception {
+        String first = tableVersions.etag(tables, List.of(PageRequest.of(0, 10)));
+        String second = tableVersions.etag(tables, List.of(PageRequest.of(0, 10)));
+
+        assertThat(first).isEqualTo(second).startsWith("W/\"");
+        assertThat(tableVersions.etag(tables, List.of(PageRequest.of(1, 10)))).isNotEqualTo(first);
+    }
+
+    @Test
+    public void 변경되면_ETag가_바뀐다() throws Exception {
+        String before = tableVersions.etag(tables, List.of());
+
+        tableVersions.onEntityChanged(EntityChangedEvent.bulk(Team.class));
+
+        assertThat(tableVersions.version(Team.class)).isEqualTo(1);
+        assertThat(tableVersions.etag(tables, List.of())).isNotEqualTo(before);
+    }
+
+    @Test
+    public void hashCode가_같은_요청키도_ETag가_다르다() throws Exception {
+        assertThat("Aa".hashCode()).isEqualTo("BB".hashCode());
+
+        assertThat(tableVersions.etag(tables, List.of("Aa"))).isNotEqualTo(tableVersions.etag(tables, List.of("BB")));
+        assertThat(tableVersions.etag(tables, List.of("a", "b"))).isNotEqualTo(tableVersions.etag(tables, List.of("a,b")));
+    }
+}
@@ -0,0 +1,132 @@
+package devwooki.study.querydsl.controller;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import devwooki.study.querydsl.entity.Member;
+import devwooki.study.querydsl.entity.Team;
+import jakarta.persistence.EntityManager;
+import jakarta.servlet.Filter;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.WriteListener;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.servlet.http.HttpServletResponseWrapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.context.WebApplicationContext;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * /v1/members/export (NDJSON 스트리밍)
+ * 클라이언트가 끊으면 컨테이너의 출력 스트림 write가 IOException을 던진다. -> 필터에서 그런 스트림으로 바꿔서 흉내낸다.
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+@Transactional
+class MemberExportTest {
+
+    private static final int MEMBERS = 300; //JsonGenerator 버퍼(8000 byte)를 넘겨서 스트리밍 도중에 내보내도록
+
+    @Autowired
+    EntityManager em;
+    @Autowired
+    MockMvc mockMvc;
+    @Autowired
+    WebApplicationContext context;
+    @Autowired
+    ObjectMapper objectMapper;
+
+    @BeforeEach
+    public void before() {
+        Team team = new Team("exportTeam");
+        em.persist(team);
+        for (int i = 0; i < MEMBERS; i++) {
+            em.persist(new Member("export" + i, i % 100, team));
+        }
+        em.flush();
+        em.clear();
+    }
+
+    @Test
+    public void 한_줄에_JSON_하나씩_내려보낸다() throws Exception {
+        MvcResult result = mockMvc.perform(get("/v1/members/export").param("teamName", "exportTeam"))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith("application/x-ndjson"))
+                .andReturn();
+
+        String body = result.getResponse().getContentAsString(StandardCharsets.UTF_8);
+        assertThat(body).endsWith("\n");
+        List<JsonNode> rows = new ArrayList<>();
+        for (String line : body.split("\n")) {
+            rows.add(objectMapper.readTree(line));
+        }
+        assertThat(rows).hasSize(MEMBERS)
+                .allSatisfy(row -> {
+                    assertThat(row.isObject()).isTrue();
+                    assertThat(row.get("teamName").asText()).isEqualTo("exportTeam");
+                });
+        assertThat(rows.get(0).get("username").asText()).startsWith("export");
+    }
+
+    @Test
+    public void 클라이언트가_끊으면_출력_스트림을_닫고_멈춘다() throws Exception {
+        AbortedOutputStream out = new AbortedOutputStream();
+        Filter abort = (request, response, chain) -> chain.doFilter(request,
+                new HttpServletResponseWrapper((HttpServletResponse) response) {
+                    @Override
+                    public ServletOutputStream getOutputStream() {
+                        return out;
+                    }
+                });
+        MockMvc aborted = MockMvcBuilders.webAppContextSetup(context).addFilters(abort).build();
+
+        assertThatThrownBy(() -> aborted.perform(get("/v1/members/export").param("teamName", "exportTeam")))
+                .hasRootCauseInstanceOf(IOException.class);
+        assertThat(out.closed).isTrue();
+    }
+
+    //연결이 끊긴 클라이언트 (톰캣은 ClientAbortException, IOException을 던진다)
+    private static class AbortedOutputStream extends ServletOutputStream {
+        private boolean closed;
+
+        @Override
+        public void write(int b) throws IOException {
+            throw new IOException("Broken pipe");
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            throw new IOException("Broken pipe");
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+        }
+
+        @Override
+        public boolean isReady() {
+            return true;
+        }
+
+        @Override
+        public void setWriteListener(WriteListener writeListener) {
+        }
+    }
+}
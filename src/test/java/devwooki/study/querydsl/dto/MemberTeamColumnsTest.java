@@ -0,0 +1,34 @@
+package devwooki.study.querydsl.dto;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class MemberTeamColumnsTest {
+
+    @Test
+    public void 컬럼_저장과_커서() throws Exception {
+        MemberTeamColumns columns = new MemberTeamColumns(2); //용량을 넘겨서 늘어나는 것까지 확인
+        for (int i = 0; i < 100; i++) {
+            columns.add(i, "member" + i, i % 50, (long) (i % 2), "team" + (i % 2));
+        }
+        columns.add(100L, "member100", 10, null, null);
+
+        assertThat(columns.size()).isEqualTo(101);
+        assertThat(columns.teamNameDictionary()).containsExactly("team0", "team1");
+
+        List<Long> ids = new ArrayList<>();
+        MemberTeamColumns.Cursor cursor = columns.cursor();
+        while (cursor.next()) {
+            ids.add(cursor.memberId());
+        }
+        assertThat(ids).hasSize(101).startsWith(0L, 1L).endsWith(100L);
+
+        assertThat(columns.toDTO(3)).isEqualTo(new MemberTeamDTO(3L, "member3", 3, 1L, "team1"));
+        assertThat(columns.hasTeam(100)).isFalse();
+        assertThat(columns.toDTO(100)).isEqualTo(new MemberTeamDTO(100L, "member100", 10, null, null));
+    }
+}
@@ -0,0 +1,58 @@
+package devwooki.study.querydsl.entity;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static devwooki.study.querydsl.entity.EntityChangedEvent.ChangeType.*;
+import static org.assertj.core.api.Assertions.assertThat;
+
+class EntityChangeCollectorTest {
+
+    List<Object> published = new ArrayList<>();
+    EntityChangeCollector collector = new EntityChangeCollector(published::add);
+
+    @AfterEach
+    public void after() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    public void 트랜잭션이_끝나면_타입마다_한번_발행() throws Exception {
+        TransactionSynchronizationManager.initSynchronization();
+        for (int i = 0; i < 1000; i++) {
+            collector.changed(Member.class, PERSIST);
+        }
+        collector.changed(Member.class, UPDATE);
+        collector.changed(Team.class, PERSIST);
+
+        List<TransactionSynchronization> synchronizations = TransactionSynchronizationManager.getSynchronizations();
+        assertThat(synchronizations).hasSize(1);
+        assertThat(published).isEmpty();
+
+        //트랜잭션 매니저처럼 동기화를 정리한 다음 afterCompletion을 호출한다
+        TransactionSynchronizationManager.clearSynchronization();
+        synchronizations.forEach(s -> s.afterCompletion(TransactionSynchronization.STATUS_COMMITTED));
+
+        assertThat(published).hasSize(2);
+        EntityChangedEvent memberChanged = (EntityChangedEvent) published.get(0);
+        assertThat(memberChanged.getEntityType()).isEqualTo(Member.class);
+        assertThat(memberChanged.getChangeTypes()).containsExactlyInAnyOrder(PERSIST, UPDATE);
+        assertThat(((EntityChangedEvent) published.get(1)).getEntityType()).isEqualTo(Team.class);
+        assertThat(TransactionSynchronizationManager.getResource(collector)).isNull();
+    }
+
+    @Test
+    public void 트랜잭션_밖에서는_바로_발행() throws Exception {
+        collector.changed(Member.class, BULK);
+
+        assertThat(published).hasSize(1);
+        assertThat(((EntityChangedEvent) published.get(0)).contains(BULK)).isTrue();
+    }
+}
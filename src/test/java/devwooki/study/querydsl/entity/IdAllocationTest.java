@@ -0,0 +1,35 @@
+package devwooki.study.querydsl.entity;
+
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.id.enhanced.SequenceStyleGenerator;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+//블록 크기는 엔티티마다 설정에서 읽는다 (ConfiguredSequenceGenerator)
+@SpringBootTest(properties = {
+        "querydsl.id.member-allocation-size=200",
+        "querydsl.id.team-allocation-size=20"
+})
+class IdAllocationTest {
+
+    @Autowired
+    EntityManagerFactory emf;
+
+    @Test
+    public void 엔티티마다_설정한_블록_크기로_id를_받아온다() throws Exception {
+        assertThat(incrementSize(Member.class)).isEqualTo(200);
+        assertThat(incrementSize(Team.class)).isEqualTo(20);
+    }
+
+    private int incrementSize(Class<?> entityClass) {
+        SequenceStyleGenerator generator = (SequenceStyleGenerator) emf.unwrap(SessionFactoryImplementor.class)
+                .getMappingMetamodel()
+                .getEntityDescriptor(entityClass)
+                .getGenerator();
+        return generator.getOptimizer().getIncrementSize();
+    }
+}
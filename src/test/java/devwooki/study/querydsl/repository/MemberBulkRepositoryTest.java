@@ -0,0 +1,82 @@
+package devwooki.study.querydsl.repository;
+
+import devwooki.study.querydsl.dto.MemberSearchCondition;
+import devwooki.study.querydsl.entity.Member;
+import devwooki.study.querydsl.entity.Team;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest(properties = "querydsl.bulk.chunk-size=2") //chunk가 여러번 돌도록 작게
+@Transactional
+class MemberBulkRepositoryTest {
+
+    @Autowired
+    EntityManager em;
+    @Autowired
+    MemberBulkRepository bulkRepository;
+    @Autowired
+    MemberJpaRepository memberJpaRepository;
+
+    Team teamA;
+    Team teamB;
+
+    @BeforeEach
+    public void before() {
+        teamA = new Team("A팀");
+        teamB = new Team("B팀");
+        em.persist(teamA);
+        em.persist(teamB);
+
+        em.persist(new Member("member1", 10, teamA));
+        em.persist(new Member("member2", 20, teamA));
+        em.persist(new Member("member3", 30, teamA));
+        em.persist(new Member("member4", 40, teamB));
+        em.persist(new Member("member5", 50, teamB));
+    }
+
+    @Test
+    public void addAge() throws Exception {
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setAgeGoe(20);
+
+        long count = bulkRepository.addAge(condition, 1);
+
+        assertThat(count).isEqualTo(4);
+        //벌크 연산 후 영속성 컨텍스트가 비워졌으므로 DB의 값이 조회된다
+        List<Member> result = memberJpaRepository.findAll_DSL();
+        assertThat(result).extracting("age").containsExactlyInAnyOrder(10, 21, 31, 41, 51);
+    }
+
+    @Test
+    public void changeTeam() throws Exception {
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setTeamName("A팀");
+
+        long count = bulkRepository.changeTeam(condition, teamB.getId());
+
+        assertThat(count).isEqualTo(3);
+        condition.setTeamName("B팀");
+        assertThat(memberJpaRepository.searchWhere(condition)).hasSize(5);
+    }
+
+    @Test
+    public void delete() throws Exception {
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setAgeLoe(30);
+
+        long count = bulkRepository.delete(condition);
+
+        assertThat(count).isEqualTo(3);
+        assertThat(memberJpaRepository.findAll_DSL())
+                .extracting("username")
+                .containsExactlyInAnyOrder("member4", "member5");
+    }
+}
@@ -0,0 +1,194 @@
+package devwooki.study.querydsl.repository;
+
+import com.p6spy.engine.common.PreparedStatementInformation;
+import com.p6spy.engine.common.StatementInformation;
+import com.p6spy.engine.common.Value;
+import com.p6spy.engine.event.SimpleJdbcEventListener;
+import devwooki.study.querydsl.dto.MemberSearchCondition;
+import devwooki.study.querydsl.entity.Member;
+import devwooki.study.querydsl.entity.Team;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.boot.testcontainers.service.connection.ServiceConnection;
+import org.springframework.context.annotation.Bean;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.testcontainers.containers.MariaDBContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Consumer;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 검색 조건 모양마다 실제로 실행된 SQL을 같은 바인딩 값으로 EXPLAIN 해서 큰 테이블을 풀 스캔하지 않는지 확인한다.
+ * 실행계획은 DB마다 다르므로 운영과 같은 MariaDB를 Testcontainers로 띄워서 확인한다. (H2에서는 의미가 없다)
+ * -> Docker가 필요해서 test 태스크에서는 빠지고 ./gradlew queryPlanTest 로 실행한다.
+ * 옵티마이저가 통계를 보고 판단하도록 충분히 데이터를 넣고(커밋) ANALYZE 한 뒤 확인한다.
+ * usernameContains는 n-gram 색인(id in)이나 like '%x%'라서 인덱스 대상이 아니므로 제외한다.
+ */
+@Tag("query-plan")
+@Testcontainers
+@SpringBootTest(properties = "spring.jpa.hibernate.ddl-auto=create-drop") //내장 DB가 아니면 기본값은 none
+class MemberQueryPlanTest {
+
+    @Container
+    @ServiceConnection
+    static MariaDBContainer<?> mariadb = new MariaDBContainer<>("mariadb:10.11");
+
+    static final int TEAMS = 100;
+    static final int MEMBERS = 20_000;
+    static final int AGES = 100; //나이는 0~99 -> 한 나이에 1%
+    static final long FULL_SCAN_ROWS = 1_000; //이보다 많은 행을 풀 스캔하면 실패
+
+    @Autowired
+    EntityManager em;
+    @Autowired
+    PlatformTransactionManager transactionManager;
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+    @Autowired
+    MemberBulkLoader bulkLoader;
+    @Autowired
+    MemberJpaRepository memberJpaRepository;
+    @Autowired
+    MemberRepository memberRepository;
+    @Autowired
+    SqlCapture sqlCapture;
+
+    @TestConfiguration
+    static class Config {
+        @Bean
+        SqlCapture sqlCapture() {
+            return new SqlCapture();
+        }
+    }
+
+    //실행된 SQL 템플릿(?)과 바인딩 순서대로의 값
+    record CapturedSql(String sql, List<Object> parameters) {
+    }
+
+    /**
+     * 캡처 중인 스레드에서 실행된 SQL과 바인딩 값을 모은다.
+     * p6spy-spring-boot-starter가 JdbcEventListener 빈으로 등록한다.
+     */
+    static class SqlCapture extends SimpleJdbcEventListener {
+        private final ThreadLocal<List<CapturedSql>> captured = new ThreadLocal<>();
+
+        List<CapturedSql> capture(Runnable action) {
+            List<CapturedSql> statements = new ArrayList<>();
+            captured.set(statements);
+            try {
+                action.run();
+            } finally {
+                captured.remove();
+            }
+            return statements;
+        }
+
+        @Override
+        public void onAfterAnyExecute(StatementInformation statementInformation, long timeElapsedNanos, SQLException e) {
+            List<CapturedSql> statements = captured.get();
+            if (statements != null && e == null) {
+                statements.add(new CapturedSql(statementInformation.getSql(), parameters(statementInformation)));
+            }
+        }
+
+        private static List<Object> parameters(StatementInformation statementInformation) {
+            if (!(statementInformation instanceof PreparedStatementInformation prepared)) {
+                return List.of();
+            }
+            return new TreeMap<>(prepared.getParameterValues()).values().stream()
+                    .map(Value::getValue)
+                    .toList();
+        }
+    }
+
+    @BeforeEach
+    public void before() {
+        List<Team> teams = new TransactionTemplate(transactionManager).execute(status -> {
+            List<Team> saved = new ArrayList<>();
+            for (int i = 0; i < TEAMS; i++) {
+                Team team = new Team("planTeam" + i);
+                em.persist(team);
+                saved.add(team);
+            }
+            return saved;
+        });
+        bulkLoader.load(IntStream.range(0, MEMBERS)
+                .mapToObj(i -> new Member("plan" + i, i % AGES, teams.get(i % TEAMS))));
+        jdbcTemplate.execute("analyze table member, team");
+    }
+
+    @Test
+    public void 검색조건마다_풀스캔을_하지_않는다() throws Exception {
+        Map<String, MemberSearchCondition> shapes = new LinkedHashMap<>();
+        shapes.put("username", condition(c -> c.setUsername("plan1234")));
+        shapes.put("usernamePrefix", condition(c -> c.setUsernamePrefix("plan1234")));
+        shapes.put("teamName", condition(c -> c.setTeamName("planTeam7")));
+        shapes.put("ageGoe", condition(c -> c.setAgeGoe(AGES - 2)));
+        shapes.put("ageLoe", condition(c -> c.setAgeLoe(1)));
+        shapes.put("ageGoe,ageLoe", condition(c -> {
+            c.setAgeGoe(40);
+            c.setAgeLoe(41);
+        }));
+        shapes.put("username,teamName", condition(c -> {
+            c.setUsername("plan1234");
+            c.setTeamName("planTeam34");
+        }));
+        shapes.put("teamName,ageGoe,ageLoe", condition(c -> {
+            c.setTeamName("planTeam7");
+            c.setAgeGoe(7);
+            c.setAgeLoe(7);
+        }));
+
+        List<String> violations = new ArrayList<>();
+        for (Map.Entry<String, MemberSearchCondition> shape : shapes.entrySet()) {
+            MemberSearchCondition condition = shape.getValue();
+            List<CapturedSql> statements = new ArrayList<>();
+            statements.addAll(sqlCapture.capture(() -> memberJpaRepository.searchWhere(condition)));
+            statements.addAll(sqlCapture.capture(() -> memberRepository.searchPageComplex2(condition, PageRequest.of(0, 10))));
+            assertThat(statements).as("shape %s", shape.getKey()).isNotEmpty();
+
+            for (CapturedSql statement : statements) {
+                //값을 SQL에 이어 붙이지 않고 실행할 때처럼 바인딩한다
+                for (Map<String, Object> row : jdbcTemplate.queryForList("explain " + statement.sql(), statement.parameters().toArray())) {
+                    if (isFullScan(row)) {
+                        violations.add(String.format("[%s] %s %s%n  -> %s", shape.getKey(), statement.sql(), statement.parameters(), row));
+                    }
+                }
+            }
+        }
+
+        assertThat(violations).as("full scan plans").isEmpty();
+    }
+
+    //type ALL(테이블 풀 스캔)이나 index(인덱스 풀 스캔)로 많은 행을 읽으면 풀 스캔으로 본다
+    private boolean isFullScan(Map<String, Object> row) {
+        Object type = row.get("type");
+        Object rows = row.get("rows");
+        return ("ALL".equals(type) || "index".equals(type))
+                && rows instanceof Number n && n.longValue() > FULL_SCAN_ROWS;
+    }
+
+    private MemberSearchCondition condition(Consumer<MemberSearchCondition> setter) {
+        MemberSearchCondition condition = new MemberSearchCondition();
+        setter.accept(condition);
+        return condition;
+    }
+}
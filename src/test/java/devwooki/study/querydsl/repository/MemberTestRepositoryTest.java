@@ -0,0 +1,117 @@
+package devwooki.study.querydsl.repository;
+
+import com.querydsl.core.Tuple;
+import devwooki.study.querydsl.config.CursorPage;
+import devwooki.study.querydsl.config.InvalidCursorException;
+import devwooki.study.querydsl.dto.MemberSearchCondition;
+import devwooki.study.querydsl.dto.MemberTeamDTO;
+import devwooki.study.querydsl.entity.Member;
+import devwooki.study.querydsl.entity.Team;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.transaction.annotation.Transactional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@SpringBootTest
+@Transactional
+class MemberTestRepositoryTest {
+
+    @Autowired
+    EntityManager em;
+    @Autowired
+    MemberTestRepository memberTestRepository;
+
+    @BeforeEach
+    public void before() {
+        Team teamA = new Team("A팀");
+        Team teamB = new Team("B팀");
+        em.persist(teamA);
+        em.persist(teamB);
+
+        em.persist(new Member("member1", 10, teamA));
+        em.persist(new Member("member2", 20, teamA));
+        em.persist(new Member("member3", 20, teamB)); // 같은 나이 -> id로 순서 결정
+        em.persist(new Member("member4", 40, teamB));
+        em.persist(new Member("member5", 50, teamB));
+    }
+
+    @Test
+    public void searchAfter() throws Exception {
+        MemberSearchCondition condition = new MemberSearchCondition();
+
+        CursorPage<MemberTeamDTO> first = memberTestRepository.searchAfter(condition, null, 2);
+        assertThat(first.getContent()).extracting("username").containsExactly("member1", "member2");
+        assertThat(first.isHasNext()).isTrue();
+
+        CursorPage<MemberTeamDTO> second = memberTestRepository.searchAfter(condition, first.getNextCursor(), 2);
+        assertThat(second.getContent()).extracting("username").containsExactly("member3", "member4");
+
+        CursorPage<MemberTeamDTO> last = memberTestRepository.searchAfter(condition, second.getNextCursor(), 2);
+        assertThat(last.getContent()).extracting("username").containsExactly("member5");
+        assertThat(last.isHasNext()).isFalse();
+        assertThat(last.getNextCursor()).isNull();
+    }
+
+    @Test
+    public void searchAfter_조건() throws Exception {
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setTeamName("B팀");
+
+        CursorPage<MemberTeamDTO> first = memberTestRepository.searchAfter(condition, null, 2);
+        CursorPage<MemberTeamDTO> second = memberTestRepository.searchAfter(condition, first.getNextCursor(), 2);
+
+        assertThat(first.getContent()).extracting("username").containsExactly("member3", "member4");
+        assertThat(second.getContent()).extracting("username").containsExactly("member5");
+    }
+
+    @Test
+    public void searchAfter_크기는_최대값으로_자른다() throws Exception {
+        CursorPage<MemberTeamDTO> page = memberTestRepository.searchAfter(new MemberSearchCondition(), null, Integer.MAX_VALUE);
+
+        assertThat(page.getSize()).isEqualTo(2000);
+        assertThat(page.getContent()).hasSize(5);
+    }
+
+    @Test
+    public void searchAfter_잘못된_커서() throws Exception {
+        assertThatThrownBy(() -> memberTestRepository.searchAfter(new MemberSearchCondition(), "not-a-cursor", 2))
+                .isInstanceOf(InvalidCursorException.class);
+    }
+
+    @Test
+    public void count쿼리_자동생성() throws Exception {
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setTeamName("B팀");
+
+        Page<Member> page = memberTestRepository.applyPagenation(condition, PageRequest.of(0, 2));
+
+        assertThat(page.getContent()).extracting("username").containsExactly("member3", "member4");
+        assertThat(page.getTotalElements()).isEqualTo(3);
+    }
+
+    @Test
+    public void count쿼리_분리() throws Exception {
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setAgeGoe(20);
+        condition.setAgeLoe(40);
+
+        Page<Member> page = memberTestRepository.divideCountQuery(condition, PageRequest.of(0, 2));
+
+        assertThat(page.getTotalElements()).isEqualTo(3);
+    }
+
+    @Test
+    public void count쿼리_groupBy() throws Exception {
+        Page<Tuple> page = memberTestRepository.countByAge(PageRequest.of(0, 2));
+
+        assertThat(page.getContent()).extracting(t -> t.get(0, Integer.class)).containsExactly(10, 20);
+        assertThat(page.getTotalElements()).isEqualTo(4); //10, 20, 40, 50
+    }
+}
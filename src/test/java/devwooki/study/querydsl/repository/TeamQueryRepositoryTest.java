@@ -0,0 +1,72 @@
+package devwooki.study.querydsl.repository;
+
+import devwooki.study.querydsl.entity.Member;
+import devwooki.study.querydsl.entity.Team;
+import jakarta.persistence.EntityManager;
+import org.hibernate.Hibernate;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.transaction.annotation.Transactional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+@Transactional
+class TeamQueryRepositoryTest {
+
+    @Autowired
+    EntityManager em;
+    @Autowired
+    TeamQueryRepository teamQueryRepository;
+
+    @BeforeEach
+    public void before() {
+        Team teamA = new Team("A팀");
+        Team teamB = new Team("B팀");
+        Team teamC = new Team("C팀");
+        em.persist(teamA);
+        em.persist(teamB);
+        em.persist(teamC);
+
+        em.persist(new Member("member1", 10, teamA));
+        em.persist(new Member("member2", 20, teamA));
+        em.persist(new Member("member3", 30, teamB));
+        em.persist(new Member("member4", 40, teamC));
+        em.persist(new Member("member5", 50, teamC));
+        em.persist(new Member("member6", 60, teamC));
+        em.flush();
+        em.clear();
+    }
+
+    @Test
+    public void 컬렉션_fetch_join_페이징() throws Exception {
+        PageRequest pageRequest = PageRequest.of(0, 2, Sort.by(Sort.Direction.DESC, "name"));
+
+        Page<Team> page = teamQueryRepository.searchPageWithMembers(null, pageRequest);
+
+        assertThat(page.getTotalElements()).isEqualTo(3);
+        assertThat(page.getContent()).extracting("name").containsExactly("C팀", "B팀");
+        assertThat(page.getContent()).allMatch(t -> Hibernate.isInitialized(t.getMembers()));
+        assertThat(page.getContent().get(0).getMembers()).hasSize(3);
+    }
+
+    @Test
+    public void Team_2차캐시() throws Exception {
+        Statistics statistics = em.getEntityManagerFactory().unwrap(SessionFactory.class).getStatistics();
+        Team teamA = teamQueryRepository.findByName("A팀").get(0);
+        em.clear();
+
+        long hits = statistics.getSecondLevelCacheHitCount();
+        Team cached = em.find(Team.class, teamA.getId());
+
+        assertThat(cached.getName()).isEqualTo("A팀");
+        assertThat(statistics.getSecondLevelCacheHitCount()).isGreaterThan(hits);
+    }
+}
@@ -0,0 +1,105 @@
+package devwooki.study.querydsl.repository;
+
+import devwooki.study.querydsl.entity.Member;
+import devwooki.study.querydsl.entity.Team;
+import devwooki.study.querydsl.entity.TeamStatistics;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 통계는 커밋 직전에 반영되므로 롤백되는 @Transactional 테스트 대신 직접 커밋하고 끝나면 지운다.
+ */
+@SpringBootTest
+class TeamStatisticsRepositoryTest {
+
+    @Autowired
+    EntityManager em;
+    @Autowired
+    PlatformTransactionManager transactionManager;
+    @Autowired
+    TeamStatisticsRepository teamStatisticsRepository;
+
+    List<Long> teamIds = new ArrayList<>();
+
+    @AfterEach
+    public void cleanUp() {
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            for (Long teamId : teamIds) {
+                em.createQuery("delete from Member m where m.team.id = :teamId")
+                        .setParameter("teamId", teamId)
+                        .executeUpdate();
+                em.remove(em.find(Team.class, teamId));
+            }
+        });
+    }
+
+    @Test
+    public void 회원_변경이_통계에_반영된다() throws Exception {
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+        Long[] ids = tx.execute(status -> {
+            Team teamA = new Team("statsA");
+            Team teamB = new Team("statsB");
+            em.persist(teamA);
+            em.persist(teamB);
+            em.persist(new Member("stats1", 10, teamA));
+            em.persist(new Member("stats2", 20, teamA));
+            Member moved = new Member("stats3", 30, teamA);
+            em.persist(moved);
+            return new Long[]{teamA.getId(), teamB.getId(), moved.getId()};
+        });
+        teamIds.add(ids[0]);
+        teamIds.add(ids[1]);
+
+        assertStatistics(ids[0], 3, 60, 10, 30);
+        assertStatistics(ids[1], 0, 0, null, null);
+
+        //최대값(30)인 회원이 팀을 옮기고, 최소값(10)인 회원이 나이를 바꾼다 -> 경계값 재계산
+        tx.executeWithoutResult(status -> {
+            em.find(Member.class, ids[2]).changeTeam(em.find(Team.class, ids[1]));
+            em.createQuery("select m from Member m where m.username = 'stats1'", Member.class)
+                    .getSingleResult()
+                    .setAge(25);
+        });
+
+        assertStatistics(ids[0], 2, 45, 20, 25);
+        assertStatistics(ids[1], 1, 30, 30, 30);
+        assertThat(teamStatisticsRepository.reconcile()).isZero();
+    }
+
+    @Test
+    public void 통계_행이_없으면_다시_계산해서_만든다() throws Exception {
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+        Long teamId = tx.execute(status -> {
+            Team team = new Team("statsC");
+            em.persist(team);
+            em.persist(new Member("stats4", 40, team));
+            return team.getId();
+        });
+        teamIds.add(teamId);
+        //기능 도입 전에 만들어진 팀처럼 통계 행을 지운다
+        tx.executeWithoutResult(status -> em.createQuery("delete from TeamStatistics s where s.teamId = :teamId")
+                .setParameter("teamId", teamId)
+                .executeUpdate());
+
+        tx.executeWithoutResult(status -> em.persist(new Member("stats5", 50, em.find(Team.class, teamId))));
+
+        assertStatistics(teamId, 2, 90, 40, 50);
+        assertThat(teamStatisticsRepository.reconcile()).isZero();
+    }
+
+    private void assertStatistics(Long teamId, long count, long sum, Integer min, Integer max) {
+        TeamStatistics statistics = teamStatisticsRepository.findByTeamId(teamId);
+        assertThat(statistics).isNotNull();
+        assertThat(statistics.matches(count, sum, min, max)).as(statistics.toString()).isTrue();
+    }
+}
@@ -0,0 +1,126 @@
+package devwooki.study.querydsl.repository;
+
+import devwooki.study.querydsl.dto.MemberSearchCondition;
+import devwooki.study.querydsl.dto.MemberTeamDTO;
+import devwooki.study.querydsl.entity.EntityChangedEvent;
+import devwooki.study.querydsl.entity.Member;
+import devwooki.study.querydsl.entity.Team;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 색인 재생성은 별도 트랜잭션(REQUIRES_NEW)에서 커밋된 회원만 읽으므로 롤백되는 @Transactional 테스트 대신 직접 커밋하고 끝나면 지운다.
+ */
+@SpringBootTest
+class UsernameNgramIndexTest {
+
+    @Autowired
+    EntityManager em;
+    @Autowired
+    PlatformTransactionManager transactionManager;
+    @Autowired
+    UsernameNgramIndex usernameIndex;
+    @Autowired
+    MemberJpaRepository memberJpaRepository;
+    @Autowired
+    MemberBulkRepository memberBulkRepository;
+
+    Team teamA;
+    Member kim;
+    Member park;
+
+    @BeforeEach
+    public void before() {
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            teamA = new Team("A팀");
+            em.persist(teamA);
+            kim = new Member("ngram_KimWoo", 10, teamA);
+            park = new Member("ngram_ParkWoo", 20, teamA);
+            em.persist(kim);
+            em.persist(park);
+            em.persist(new Member("ngram_Lee", 30, teamA));
+        });
+        usernameIndex.rebuild();
+    }
+
+    @AfterEach
+    public void cleanUp() {
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            em.createQuery("select m from Member m where m.team.id = :teamId", Member.class)
+                    .setParameter("teamId", teamA.getId())
+                    .getResultList()
+                    .forEach(em::remove);
+            em.remove(em.find(Team.class, teamA.getId()));
+        });
+    }
+
+    @Test
+    public void 부분_검색() throws Exception {
+        Set<Long> ids = usernameIndex.findIdsContaining("woo");
+
+        assertThat(ids).containsExactlyInAnyOrder(kim.getId(), park.getId());
+        assertThat(usernameIndex.findIdsContaining("kimwoo")).containsExactly(kim.getId());
+        assertThat(usernameIndex.findIdsContaining("zzz")).isEmpty();
+        assertThat(usernameIndex.findIdsContaining("wo")).isNull(); //3글자 미만 -> like로 대신 검색
+    }
+
+    @Test
+    public void 검색조건_prefix_contains() throws Exception {
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setUsernamePrefix("ngram_");
+        condition.setUsernameContains("WOO");
+
+        List<MemberTeamDTO> result = memberJpaRepository.searchWhere(condition);
+
+        assertThat(result).extracting("username").containsExactlyInAnyOrder("ngram_KimWoo", "ngram_ParkWoo");
+    }
+
+    //prefix, contains 모두 대소문자를 무시한다. contains는 색인으로 답하든(3글자 이상) like로 답하든(3글자 미만) 결과가 같다
+    @Test
+    public void 대소문자_규칙() throws Exception {
+        assertThat(usernames(condition("NGRAM_KIM", null))).containsExactly("ngram_KimWoo");
+        assertThat(usernames(condition(null, "PARKWOO"))).containsExactly("ngram_ParkWoo");
+        assertThat(usernames(condition(null, "mW"))).containsExactly("ngram_KimWoo");
+    }
+
+    //벌크 연산은 색인을 거치지 않고 같은 규칙의 like로 고른다
+    @Test
+    public void 벌크_연산은_색인_없이_같은_규칙으로_고른다() throws Exception {
+        long affected = memberBulkRepository.addAge(condition("NGRAM_", "WOO"), 1);
+
+        assertThat(affected).isEqualTo(2);
+    }
+
+    private List<String> usernames(MemberSearchCondition condition) {
+        return memberJpaRepository.searchWhere(condition).stream().map(MemberTeamDTO::getUsername).toList();
+    }
+
+    private static MemberSearchCondition condition(String prefix, String contains) {
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setUsernamePrefix(prefix);
+        condition.setUsernameContains(contains);
+        return condition;
+    }
+
+    //벌크 연산 뒤에는 어떤 행이 바뀌었는지 모르므로 재생성이 끝날 때까지 like로 대신 검색한다
+    @Test
+    public void 벌크_연산_뒤에는_재생성_전까지_색인을_쓰지_않는다() throws Exception {
+        usernameIndex.markBulkChanged(EntityChangedEvent.bulk(Member.class));
+
+        assertThat(usernameIndex.findIdsContaining("woo")).isNull();
+
+        usernameIndex.rebuild();
+        assertThat(usernameIndex.findIdsContaining("woo")).containsExactlyInAnyOrder(kim.getId(), park.getId());
+    }
+}
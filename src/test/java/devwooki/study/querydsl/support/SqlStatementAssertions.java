@@ -0,0 +1,32 @@
+package devwooki.study.querydsl.support;
+
+import devwooki.study.querydsl.config.SqlStatementCounter;
+import devwooki.study.querydsl.config.StatementScope;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 테스트용 SQL 실행 횟수 검증
+ * ex) assertMaxStatements(counter, 2, () -> repository.search(condition));
+ * 주의 : 영속성 컨텍스트에 flush되지 않은 변경이 있으면 그 insert/update도 같이 세어지므로 먼저 flush 하자
+ */
+public final class SqlStatementAssertions {
+
+    private SqlStatementAssertions() {
+    }
+
+    public static StatementScope capture(SqlStatementCounter counter, Runnable action) {
+        try (StatementScope scope = counter.open("test")) {
+            action.run();
+            return scope;
+        }
+    }
+
+    public static StatementScope assertMaxStatements(SqlStatementCounter counter, int max, Runnable action) {
+        StatementScope scope = capture(counter, action);
+        assertThat(scope.getTotal())
+                .as("executed statements %s", scope.getCounts())
+                .isLessThanOrEqualTo(max);
+        return scope;
+    }
+}